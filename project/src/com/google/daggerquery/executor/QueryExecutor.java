@@ -16,25 +16,96 @@ limitations under the License.
 
 package com.google.daggerquery.executor;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
-import com.google.daggerquery.executor.models.GraphProto;
+import com.google.common.hash.Hashing;
+import com.google.common.math.LongMath;
+import com.google.daggerquery.executor.models.Graph;
 import com.google.daggerquery.executor.models.MisspelledNodeNameException;
 import com.google.daggerquery.executor.models.Query;
-import com.google.daggerquery.executor.services.SourcesLoader;
-import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph;
+import com.google.daggerquery.executor.models.QueryLimitExceededException;
+import com.google.daggerquery.executor.services.GraphRepository;
+import com.google.daggerquery.executor.services.NodeLookup;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A class which is responsible for parsing user's input and executing a query.
+ *
+ * <p>All queries are executed on graphs taken from the given {@link GraphRepository},
+ * so binding graphs are loaded only once for all executed queries.
  */
 public class QueryExecutor {
+
+  /**
+   * The default limit of the total length of all cached query results and their keys, in characters.
+   */
+  public static final long DEFAULT_MAX_CACHE_WEIGHT = 32 * 1024 * 1024;
+
+  /**
+   * The limit of the total length of results of a single query and its key, in characters, above which
+   * results are not cached. Large results are usually streamed, caching them would keep them all in memory.
+   */
+  public static final long MAX_CACHED_RESULTS_WEIGHT = 256 * 1024;
+
+  private final GraphRepository graphRepository;
+
+  // The key is a graph snapshot id followed by a key of a query.
+  private final Cache<String, ImmutableList<String>> resultCache;
+
+  // Executes a query on different graphs concurrently, if it's null all graphs are processed by the calling thread.
+  private final ExecutorService graphExecutor;
+
+  public QueryExecutor(GraphRepository graphRepository) {
+    this(graphRepository, DEFAULT_MAX_CACHE_WEIGHT);
+  }
+
+  public QueryExecutor(GraphRepository graphRepository, long maxCacheWeight) {
+    this(graphRepository, maxCacheWeight, /*graphExecutor =*/ null);
+  }
+
+  /**
+   * Creates an executor which keeps results of recent queries until their total length
+   * exceeds {@code maxCacheWeight} characters, the least recently used results are evicted first.
+   *
+   * <p>Use {@code 0} to disable caching.
+   *
+   * <p>If {@code graphExecutor} is not {@code null}, a query is executed on all graphs which contain its source
+   * concurrently. Results are still merged in the order of graphs, so they don't depend on the executor.
+   */
+  public QueryExecutor(GraphRepository graphRepository, long maxCacheWeight, ExecutorService graphExecutor) {
+    this.graphRepository = graphRepository;
+    this.graphExecutor = graphExecutor;
+    this.resultCache = CacheBuilder.newBuilder()
+        .maximumWeight(maxCacheWeight)
+        .weigher((String key, ImmutableList<String> results) -> calculateWeight(key, results))
+        .recordStats()
+        .build();
+  }
+
   /**
    * An entry point which executes a query specified as a command-line {@code args} and prints the result.
    */
@@ -42,7 +113,7 @@ public class QueryExecutor {
     PrintStream printStream = System.out;
 
     try {
-      ImmutableList resultList = execute(args);
+      ImmutableList resultList = new QueryExecutor(new GraphRepository()).execute(args);
       resultList.forEach(printStream::println);
     } catch (IllegalArgumentException e) {
       printStream.println("Execution failed. Reason: " + e.getMessage());
@@ -57,38 +128,384 @@ public class QueryExecutor {
    * <p>The first argument must always define the name of a query.
    * Next arguments belong to a query as its parameters.
    *
+   * <p>A query is executed only on graphs which contain its source node.
+   *
+   * <p>Successful results which are not longer than {@code MAX_CACHED_RESULTS_WEIGHT} are cached,
+   * so repeated queries are not executed again.
+   *
    * @throws IOException when files with binding graphs cannot be found
    * @return an instance of {@link ImmutableList} which contains query's results
    */
-  public static ImmutableList<String> execute(String[] args) throws IOException {
+  public ImmutableList<String> execute(String[] args) throws IOException {
+    return execute(parseQuery(args), /*deadline =*/ Long.MAX_VALUE);
+  }
+
+  /**
+   * Parses user's arguments like {@code execute()} does, but results of queries which support it are not
+   * collected: they are found only while the returned {@link ResultStream} is consumed.
+   *
+   * <p>Everything which may fail the query is checked before this method returns, so a caller knows whether
+   * the query succeeded before it gets the first result.
+   *
+   * @throws IllegalArgumentException if the query cannot be parsed or fails
+   * @throws IOException when files with binding graphs cannot be found
+   */
+  public ResultStream executeLazily(String[] args) throws IOException {
+    Query query = parseQuery(args);
+    String cacheKey = makeCacheKey(query);
+    ImmutableList<String> cachedResults = resultCache.getIfPresent(cacheKey);
+    if (cachedResults != null) {
+      return ResultStream.ofResults(cachedResults);
+    } else if (!query.hasLazyResults()) {
+      return ResultStream.ofResults(executeAndCache(query, cacheKey, /*deadline =*/ Long.MAX_VALUE));
+    }
+
+    List<Graph> graphsWithResults = executeOnGraphs(query, /*deadline =*/ Long.MAX_VALUE, bindingGraph -> {
+      query.checkHasResults(bindingGraph);
+      return bindingGraph;
+    });
+    return ResultStream.ofLazyResults(query, graphsWithResults, results -> cacheResults(cacheKey, results));
+  }
+
+  /**
+   * Executes several queries like {@link #executeBatch(List, long, ObjLongConsumer)} does, but without a time limit.
+   *
+   * @throws IOException when files with binding graphs cannot be found
+   */
+  public ImmutableList<BatchResult> executeBatch(List<String[]> queries) throws IOException {
+    return executeBatch(queries, /*timeoutNanos =*/ Long.MAX_VALUE, (queryName, executionNanos) -> {});
+  }
+
+  /**
+   * Executes several queries, each of them is specified with user's arguments like in {@code execute()}.
+   *
+   * <p>Returns a result for each query in the same order. A query which fails with {@link IllegalArgumentException}
+   * gets an error message instead of results and doesn't affect other queries.
+   *
+   * <p>Graphs are loaded before the first query, so all queries are executed on the same graphs. Equal queries,
+   * even if they are written differently, are executed only once. Queries are executed one by one by the calling
+   * thread, only a single query may still be spread over the graph executor like in {@code execute()}.
+   *
+   * <p>Once {@code timeoutNanos} have passed since the batch started, the remaining queries are not executed
+   * and get an error message instead. A query which is spread over the graph executor and is still running
+   * at that moment is cancelled and gets an error message as well, other queries are not interrupted.
+   *
+   * <p>After each executed query, the {@code executionListener} gets the name of the query and
+   * its execution time in nanoseconds.
+   *
+   * @throws IOException when files with binding graphs cannot be found
+   */
+  public ImmutableList<BatchResult> executeBatch(List<String[]> queries, long timeoutNanos,
+                                                ObjLongConsumer<String> executionListener) throws IOException {
+    long startTime = System.nanoTime();
+    long deadline = LongMath.saturatedAdd(startTime, timeoutNanos);
+    graphRepository.getGraphs();
+
+    Map<String, BatchResult> resultsByQuery = new HashMap<>();
+    ImmutableList.Builder<BatchResult> batchResults = ImmutableList.builderWithExpectedSize(queries.size());
+    for (String[] args: queries) {
+      Query query;
+      try {
+        query = parseQuery(args);
+      } catch (IllegalArgumentException e) {
+        batchResults.add(BatchResult.ofError(e.getMessage()));
+        continue;
+      }
+
+      BatchResult batchResult = resultsByQuery.get(query.getKey());
+      if (batchResult == null && System.nanoTime() - startTime >= timeoutNanos) {
+        batchResult = BatchResult.ofError("The time limit of the batch is exceeded, the query was not executed.");
+      } else if (batchResult == null) {
+        long executionStart = System.nanoTime();
+        try {
+          batchResult = BatchResult.ofResults(execute(query, deadline));
+        } catch (IllegalArgumentException e) {
+          batchResult = BatchResult.ofError(e.getMessage());
+        }
+        executionListener.accept(query.getName(), System.nanoTime() - executionStart);
+        resultsByQuery.put(query.getKey(), batchResult);
+      }
+      batchResults.add(batchResult);
+    }
+
+    return batchResults.build();
+  }
+
+  /**
+   * Returns a tag which identifies results of the query specified with the given {@code args}.
+   *
+   * <p>The tag is derived from the contents of the graphs and the normalized query, so it changes only when
+   * the graphs are rebuilt. The query itself is not executed.
+   *
+   * @throws IllegalArgumentException if the query cannot be parsed
+   * @throws IOException when files with binding graphs cannot be found
+   */
+  public String getResultsTag(String[] args) throws IOException {
+    Query query = parseQuery(args);
+    return Hashing.murmur3_128().newHasher()
+        .putString(graphRepository.getSnapshotHash(), UTF_8)
+        .putString(query.getKey(), UTF_8)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Returns hit and miss statistics of the cache with query results.
+   */
+  public CacheStats getCacheStats() {
+    return resultCache.stats();
+  }
+
+  private static Query parseQuery(String[] args) {
     if (args.length == 0) {
       throw new IllegalArgumentException("You did not specify the request and its parameters.");
     }
 
-    Query query = new Query(args[0], Arrays.copyOfRange(args, 1, args.length));
-    List<BindingGraph> bindingGraphs = new SourcesLoader().loadBindingGraphs();
+    return new Query(args[0], Arrays.copyOfRange(args, 1, args.length));
+  }
+
+  /**
+   * Executes the given {@code query} or returns its cached results.
+   *
+   * <p>The {@code deadline} is a value of {@link System#nanoTime()} after which results of the query
+   * are no longer awaited.
+   */
+  private ImmutableList<String> execute(Query query, long deadline) throws IOException {
+    String cacheKey = makeCacheKey(query);
+    ImmutableList<String> cachedResults = resultCache.getIfPresent(cacheKey);
+    if (cachedResults != null) {
+      return cachedResults;
+    }
+
+    return executeAndCache(query, cacheKey, deadline);
+  }
+
+  private ImmutableList<String> executeAndCache(Query query, String cacheKey, long deadline) throws IOException {
+    ImmutableList.Builder<String> resultBuilder = new ImmutableList.Builder<>();
+    for (ImmutableList<String> graphResults: executeOnGraphs(query, deadline, query::execute)) {
+      resultBuilder.addAll(graphResults);
+    }
+
+    ImmutableList<String> results = resultBuilder.build();
+    cacheResults(cacheKey, results);
+    return results;
+  }
+
+  private String makeCacheKey(Query query) throws IOException {
+    // Graphs never change after loading, so the same query on the same snapshot always has the same results.
+    return graphRepository.getSnapshotId() + " " + query.getKey();
+  }
+
+  private void cacheResults(String cacheKey, ImmutableList<String> results) {
+    if (calculateWeight(cacheKey, results) <= MAX_CACHED_RESULTS_WEIGHT) {
+      resultCache.put(cacheKey, results);
+    }
+  }
+
+  /**
+   * Executes the given {@code task} of a query on all graphs which contain its source node
+   * and returns results of the task on graphs where it succeeded, in the order of graphs.
+   *
+   * <p>Once the query fails on any graph or the {@code deadline} passes, its execution on other graphs
+   * is cancelled.
+   *
+   * @throws QueryLimitExceededException if the query exceeded its limits on any of the graphs
+   * or didn't complete before the {@code deadline}
+   */
+  private <T> List<T> executeOnGraphs(Query query, long deadline, Function<Graph, T> task) throws IOException {
+    ImmutableList<Graph> bindingGraphs = graphRepository.getGraphs();
+    NodeLookup nodeLookup = graphRepository.getNodeLookup();
+
+    // A query is executed only on graphs which contain its source node. If there are no such graphs,
+    // typos are looked for once among names of all graphs. A pattern is matched against each graph instead.
+    int[] graphIndexes = query.hasSourcePattern()
+        ? IntStream.range(0, bindingGraphs.size()).toArray()
+        : nodeLookup.getGraphsContainingNode(query.getSource());
+    if (graphIndexes.length == 0) {
+      throw new IllegalArgumentException(
+          nodeLookup.getNodeNameMatcher().makeNodeNotFoundException(query.getSource()).getMessage());
+    }
 
-    ImmutableList.Builder<String> resultBuilder = new ImmutableList.Builder();
+    List<T> results = new ArrayList<>();
 
     // We assume that we successfully executed a query only if in at least one graph it was executed without fail.
+    // A query which exceeded its limits on any graph fails anyway, since its results would be incomplete.
     SortedSetMultimap<Integer, Exception> exceptions = TreeMultimap.create(Ordering.natural(), Ordering.allEqual());
-    for (BindingGraph bindingGraph: bindingGraphs) {
-      try {
-        resultBuilder.addAll(query.execute(new GraphProto(bindingGraph)));
-      } catch (IllegalArgumentException exception) {
-        exceptions.put(3, exception);
-      } catch (NoSuchElementException exception) {
-        exceptions.put(2, exception);
-      } catch (MisspelledNodeNameException exception) {
-        exceptions.put(1, exception);
+    List<Future<T>> futureResults = new ArrayList<>();
+    if (graphExecutor != null && graphIndexes.length > 1) {
+      for (int graphIndex: graphIndexes) {
+        Graph bindingGraph = bindingGraphs.get(graphIndex);
+        futureResults.add(graphExecutor.submit(() -> task.apply(bindingGraph)));
       }
     }
 
-    ImmutableList<String> resultList = resultBuilder.build();
-    if (resultList.isEmpty() && exceptions.size() > 0) {
+    try {
+      for (int position = 0; position < graphIndexes.length; position++) {
+        try {
+          results.add(futureResults.isEmpty()
+              ? task.apply(bindingGraphs.get(graphIndexes[position]))
+              : getResult(futureResults, position, deadline));
+        } catch (QueryLimitExceededException exception) {
+          throw exception;
+        } catch (IllegalArgumentException exception) {
+          exceptions.put(3, exception);
+        } catch (NoSuchElementException exception) {
+          exceptions.put(2, exception);
+        } catch (MisspelledNodeNameException exception) {
+          exceptions.put(1, exception);
+        }
+      }
+    } catch (RuntimeException exception) {
+      // Results of other graphs are not needed anymore, so they should not keep occupying the graph executor.
+      futureResults.forEach(futureResult -> futureResult.cancel(/*mayInterruptIfRunning =*/ true));
+      throw exception;
+    }
+
+    if (results.isEmpty() && exceptions.size() > 0) {
       throw new IllegalArgumentException(exceptions.entries().iterator().next().getValue().getMessage());
     } else {
-      return resultList;
+      return results;
+    }
+  }
+
+  /**
+   * Waits until the {@code deadline} for the result at the given {@code position} and rethrows the exception
+   * thrown by the query, if any.
+   */
+  private static <T> T getResult(List<Future<T>> futureResults, int position, long deadline) {
+    try {
+      long timeoutNanos = LongMath.saturatedSubtract(deadline, System.nanoTime());
+      return futureResults.get(position).get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (ExecutionException exception) {
+      Throwables.throwIfUnchecked(exception.getCause());
+      throw new IllegalStateException(exception.getCause());
+    } catch (TimeoutException exception) {
+      throw new QueryLimitExceededException("The time limit of the batch is exceeded, the query was not completed.");
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Query execution was interrupted.", exception);
+    }
+  }
+
+  private static int calculateWeight(String key, ImmutableList<String> results) {
+    long weight = key.length();
+    for (String result: results) {
+      weight += result.length();
+    }
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * A result of a single query of a batch, it contains either results of the query or a message
+   * explaining why the query failed.
+   */
+  public static final class BatchResult {
+    private final ImmutableList<String> results;
+    private final String errorMessage;
+
+    private BatchResult(ImmutableList<String> results, String errorMessage) {
+      this.results = results;
+      this.errorMessage = errorMessage;
+    }
+
+    static BatchResult ofResults(ImmutableList<String> results) {
+      return new BatchResult(results, /*errorMessage =*/ null);
+    }
+
+    static BatchResult ofError(String errorMessage) {
+      return new BatchResult(/*results =*/ null, errorMessage);
+    }
+
+    public boolean isSuccessful() {
+      return results != null;
+    }
+
+    /**
+     * Returns results of a successful query.
+     *
+     * @throws IllegalStateException if the query failed
+     */
+    public ImmutableList<String> getResults() {
+      if (results == null) {
+        throw new IllegalStateException("The query failed: " + errorMessage);
+      }
+      return results;
+    }
+
+    /**
+     * Returns a message explaining why the query failed or {@code null} if it was successful.
+     */
+    public String getErrorMessage() {
+      return errorMessage;
+    }
+  }
+
+  /**
+   * Results of a single query, which are either already known or found while they are consumed.
+   *
+   * <p>Results can be consumed only once.
+   */
+  public static final class ResultStream {
+    private final ImmutableList<String> results;
+
+    private final Query query;
+    private final List<Graph> graphsWithResults;
+    private final Consumer<ImmutableList<String>> smallResultsListener;
+
+    private ResultStream(ImmutableList<String> results, Query query, List<Graph> graphsWithResults,
+                         Consumer<ImmutableList<String>> smallResultsListener) {
+      this.results = results;
+      this.query = query;
+      this.graphsWithResults = graphsWithResults;
+      this.smallResultsListener = smallResultsListener;
+    }
+
+    static ResultStream ofResults(ImmutableList<String> results) {
+      return new ResultStream(results, /*query =*/ null, /*graphsWithResults =*/ null, /*smallResultsListener =*/ null);
+    }
+
+    /**
+     * Creates a stream which finds results of the given {@code query} on the given graphs. If all results
+     * are not longer than {@code MAX_CACHED_RESULTS_WEIGHT}, they are passed to {@code smallResultsListener}.
+     */
+    static ResultStream ofLazyResults(Query query, List<Graph> graphsWithResults,
+                                      Consumer<ImmutableList<String>> smallResultsListener) {
+      return new ResultStream(/*results =*/ null, query, graphsWithResults, smallResultsListener);
+    }
+
+    /**
+     * Returns results if they are already known or {@code null} if they are found only while they are consumed.
+     */
+    public ImmutableList<String> getKnownResults() {
+      return results;
+    }
+
+    /**
+     * Passes results to the given {@code consumer} one by one. Results of different graphs are passed
+     * in the order of graphs, like {@code execute()} merges them.
+     */
+    public void forEachResult(Consumer<String> consumer) {
+      if (results != null) {
+        results.forEach(consumer);
+        return;
+      }
+
+      // Only small results are collected, so memory used by a stream doesn't depend on the number of results.
+      ImmutableList.Builder<String> smallResults = new ImmutableList.Builder<>();
+      long[] weight = {query.getKey().length()};
+      for (Graph bindingGraph: graphsWithResults) {
+        query.forEachResult(bindingGraph, result -> {
+          weight[0] += result.length();
+          if (weight[0] <= MAX_CACHED_RESULTS_WEIGHT) {
+            smallResults.add(result);
+          }
+          consumer.accept(result);
+        });
+      }
+
+      if (weight[0] <= MAX_CACHED_RESULTS_WEIGHT) {
+        smallResultsListener.accept(smallResults.build());
+      }
     }
   }
 }
@@ -13,6 +13,7 @@
 # limitations under the License.
 
 load("@rules_java//java:defs.bzl", "java_binary")
+load("//src/com/google/daggerquery/executor:dagger_query_graph_file.bzl", "dagger_query_graph_file")
 load("//src/com/google/daggerquery/plugin:dagger_query_textproto.bzl", "dagger_query_textproto")
 
 def dagger_query(name, dagger_app_target):
@@ -21,9 +22,18 @@ def dagger_query(name, dagger_app_target):
        dagger_app_target = dagger_app_target
    )
 
+   graph_file_name = name + "_graph_file"
+
+   dagger_query_graph_file(
+       name = graph_file_name,
+       binding_graph_data = ":binding_graph_data"
+   )
+
    java_binary(
      name = name,
      main_class = "com.google.daggerquery.executor.QueryExecutor",
      runtime_deps = ["//src/com/google/daggerquery/executor:query_executor"],
      resources = [":binding_graph_data"],
+     data = [":" + graph_file_name],
+     jvm_flags = ["-Ddaggerquery.graph_file=$(rootpath :%s)" % graph_file_name],
    )
@@ -0,0 +1,45 @@
+# Copyright 2020 Google LLC
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#     https://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+
+def dagger_query_graph_file(name, binding_graph_data):
+    _dagger_query_graph_file(name = name, binding_graph_data = binding_graph_data)
+
+def _dagger_query_graph_file_impl(ctx):
+    ctx.actions.run(
+        inputs = [ctx.file.binding_graph_data],
+        outputs = [ctx.outputs.out],
+        executable = ctx.executable._graph_file_compiler,
+        arguments = [ctx.file.binding_graph_data.path, ctx.outputs.out.path],
+        mnemonic = "DaggerQueryGraphFile",
+        progress_message = "Compiling binding graphs into %s" % ctx.outputs.out.short_path,
+    )
+
+_dagger_query_graph_file = rule(
+    attrs = {
+        "binding_graph_data": attr.label(
+            mandatory = True,
+            allow_single_file = [".zip"],
+        ),
+        "_graph_file_compiler": attr.label(
+            default = Label("//src/com/google/daggerquery/executor/services:graph_file_compiler"),
+            executable = True,
+            cfg = "host",
+        ),
+    },
+    outputs = {
+        "out": "%{name}.graph",
+    },
+    implementation = _dagger_query_graph_file_impl,
+)
@@ -0,0 +1,69 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph.ListWithDependencies;
+import com.google.daggerquery.protobuf.autogen.DependencyProto.Dependency;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Implementation of {@link Graph} which stores a {@link BindingGraph} in a compact form.
+ *
+ * <p>Node names are interned into a {@link SymbolTable} and edges are stored as compressed sparse rows,
+ * see {@link CsrGraph} for details.
+ */
+public class CompactGraph extends CsrGraph {
+
+  public CompactGraph(BindingGraph bindingGraph) {
+    super(collectNodeNames(bindingGraph.getAdjacencyListMap()),
+        nodeIds -> makeDependencyLists(bindingGraph.getAdjacencyListMap(), nodeIds));
+  }
+
+  /**
+   * Returns names of all nodes sorted in lexicographical order.
+   *
+   * <p>Targets are added too, so the graph stays consistent even if some target doesn't have its own entry.
+   */
+  private static TreeSet<String> collectNodeNames(Map<String, ListWithDependencies> adjacencyList) {
+    TreeSet<String> sortedNodeNames = new TreeSet<>(adjacencyList.keySet());
+    for (ListWithDependencies listWithDependencies: adjacencyList.values()) {
+      for (Dependency dependency: listWithDependencies.getDependencyList()) {
+        sortedNodeNames.add(dependency.getTarget());
+      }
+    }
+    return sortedNodeNames;
+  }
+
+  /**
+   * Converts targets of each node into node ids, a node which appears only as a target gets no dependencies.
+   */
+  private static int[][] makeDependencyLists(Map<String, ListWithDependencies> adjacencyList,
+                                             Map<String, Integer> nodeIds) {
+    int[][] dependencyLists = new int[nodeIds.size()][];
+    for (Map.Entry<String, Integer> node: nodeIds.entrySet()) {
+      ListWithDependencies listWithDependencies = adjacencyList.get(node.getKey());
+      int[] dependencyList = new int[listWithDependencies == null ? 0 : listWithDependencies.getDependencyCount()];
+      for (int index = 0; index < dependencyList.length; index++) {
+        dependencyList[index] = nodeIds.get(listWithDependencies.getDependency(index).getTarget());
+      }
+      dependencyLists[node.getValue()] = dependencyList;
+    }
+    return dependencyLists;
+  }
+}
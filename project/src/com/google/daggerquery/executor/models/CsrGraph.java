@@ -0,0 +1,180 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.Function;
+
+/**
+ * A base of graphs which are kept in memory in a compact form, it's shared by {@link CompactGraph}
+ * and {@link MergedGraph}, which differ only in where nodes and edges are taken from.
+ *
+ * <p>Each node name is interned once into a dense integer id of a {@link SymbolTable}. Ids are assigned
+ * in lexicographical order of node names, so sorting ids also sorts names.
+ *
+ * <p>Both the graph and the reversed graph are stored as
+ * <a href="https://en.wikipedia.org/wiki/Sparse_matrix#Compressed_sparse_row_(CSR,_CRS_or_Yale_format)">
+ * compressed sparse rows</a>: the neighbours of a node with id {@code i} are located in a single {@code int[]}
+ * array between indexes {@code offsets[i]} (inclusive) and {@code offsets[i + 1]} (exclusive).
+ * So traversing a graph doesn't require any allocations or string hashing.
+ */
+abstract class CsrGraph implements Graph {
+
+  private final SymbolTable nodeNames;
+
+  private final int[] dependencyOffsets;
+  private final int[] dependencies;
+
+  private final int[] ancestorOffsets;
+  private final int[] ancestors;
+
+  private final Supplier<NodeNameMatcher> nodeNameMatcher = Suppliers.memoize(() -> new NodeNameMatcher(this));
+
+  /**
+   * Creates a graph with the given nodes, which must be sorted in lexicographical order.
+   *
+   * <p>Edges are made by {@code dependencyListsMaker}: it gets ids of all nodes and returns dependencies
+   * of each node, indexed by node ids. Dependencies may be given in any order and may repeat.
+   */
+  CsrGraph(SortedSet<String> sortedNodeNames, Function<Map<String, Integer>, int[][]> dependencyListsMaker) {
+    nodeNames = new SymbolTable(sortedNodeNames);
+    int nodeCount = nodeNames.size();
+
+    // Strings are mapped to ids with a hash map only while the graph is built.
+    Map<String, Integer> nodeIds = Maps.newHashMapWithExpectedSize(nodeCount);
+    for (String node: sortedNodeNames) {
+      nodeIds.put(node, nodeIds.size());
+    }
+
+    int[][] dependencyLists = dependencyListsMaker.apply(nodeIds);
+    int numberOfEdges = 0;
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      dependencyLists[nodeId] = Arrays.stream(dependencyLists[nodeId]).sorted().distinct().toArray();
+      numberOfEdges += dependencyLists[nodeId].length;
+    }
+
+    dependencyOffsets = new int[nodeCount + 1];
+    dependencies = new int[numberOfEdges];
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      int offset = dependencyOffsets[nodeId];
+      System.arraycopy(dependencyLists[nodeId], 0, dependencies, offset, dependencyLists[nodeId].length);
+      dependencyOffsets[nodeId + 1] = offset + dependencyLists[nodeId].length;
+    }
+
+    // Sources are processed in increasing order, so each list of ancestors is sorted too.
+    ancestorOffsets = new int[nodeCount + 1];
+    ancestors = new int[numberOfEdges];
+    for (int target: dependencies) {
+      ancestorOffsets[target + 1]++;
+    }
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      ancestorOffsets[nodeId + 1] += ancestorOffsets[nodeId];
+    }
+
+    int[] nextAncestorIndexes = Arrays.copyOf(ancestorOffsets, nodeCount);
+    for (int source = 0; source < nodeCount; source++) {
+      for (int index = dependencyOffsets[source]; index < dependencyOffsets[source + 1]; index++) {
+        ancestors[nextAncestorIndexes[dependencies[index]]++] = source;
+      }
+    }
+  }
+
+  @Override
+  public ImmutableSet<String> getDependencies(String node) {
+    return makeNodeNamesSet(getNodeId(node), dependencyOffsets, dependencies);
+  }
+
+  @Override
+  public ImmutableSet<String> getAncestors(String node) {
+    return makeNodeNamesSet(getNodeId(node), ancestorOffsets, ancestors);
+  }
+
+  @Override
+  public boolean containsNode(String node) {
+    return nodeNames.getId(node) >= 0;
+  }
+
+  /**
+   * Returns all the nodes presented in the graph.
+   *
+   * <p>Names are decoded on each call and are not cached.
+   */
+  @Override
+  public ImmutableSet<String> getAllNodes() {
+    return nodeNames.getAllNames();
+  }
+
+  @Override
+  public NodeNameMatcher getNodeNameMatcher() {
+    return nodeNameMatcher.get();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return nodeNames.size();
+  }
+
+  @Override
+  public int getNodeId(String node) {
+    return nodeNames.getId(node);
+  }
+
+  @Override
+  public String getNodeName(int nodeId) {
+    return nodeNames.getName(nodeId);
+  }
+
+  @Override
+  public int getDependencyCount(int nodeId) {
+    return dependencyOffsets[nodeId + 1] - dependencyOffsets[nodeId];
+  }
+
+  @Override
+  public int getDependency(int nodeId, int index) {
+    return dependencies[dependencyOffsets[nodeId] + index];
+  }
+
+  @Override
+  public int getAncestorCount(int nodeId) {
+    return ancestorOffsets[nodeId + 1] - ancestorOffsets[nodeId];
+  }
+
+  @Override
+  public int getAncestor(int nodeId, int index) {
+    return ancestors[ancestorOffsets[nodeId] + index];
+  }
+
+  private ImmutableSet<String> makeNodeNamesSet(int nodeId, int[] offsets, int[] neighbours) {
+    if (nodeId < 0) {
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet.Builder<String> nodeNamesBuilder =
+        ImmutableSet.builderWithExpectedSize(offsets[nodeId + 1] - offsets[nodeId]);
+    for (int index = offsets[nodeId]; index < offsets[nodeId + 1]; index++) {
+      nodeNamesBuilder.add(nodeNames.getName(neighbours[index]));
+    }
+
+    return nodeNamesBuilder.build();
+  }
+}
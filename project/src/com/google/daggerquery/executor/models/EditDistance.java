@@ -0,0 +1,207 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+/**
+ * A reusable engine which measures <a href = "https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance</a>
+ * between a fixed pattern and many other strings, but only up to the given limit.
+ *
+ * <p>For patterns of up to 64 characters uses a bit-parallel algorithm by Myers in Hyyro's formulation:
+ * a whole column of the distance matrix is encoded in two 64-bit words, so each character of another string
+ * is processed with a few bitwise operations. Longer patterns are processed with a classic dynamic programming
+ * restricted to a band around the diagonal of the distance matrix.
+ *
+ * <p>Both algorithms stop as soon as the distance is known to exceed the limit.
+ *
+ * <p>An instance is not thread-safe, but it doesn't allocate memory once its buffers are large enough.
+ */
+public class EditDistance {
+
+  private static final int MAX_BIT_PARALLEL_LENGTH = Long.SIZE;
+
+  // Masks of characters below this value are stored in a table, others are looked for in a short list.
+  private static final int TABLE_SIZE = 256;
+
+  private final long[] tableMasks = new long[TABLE_SIZE];
+  private final char[] otherCharacters = new char[MAX_BIT_PARALLEL_LENGTH];
+  private final long[] otherMasks = new long[MAX_BIT_PARALLEL_LENGTH];
+  private int otherCharactersCount = 0;
+
+  private String pattern = "";
+
+  private int[] previousRow = new int[0];
+  private int[] currentRow = new int[0];
+
+  /**
+   * Sets a pattern which will be compared with strings passed to {@code calculateDistance()}.
+   */
+  public void setPattern(String pattern) {
+    for (int index = 0; index < Math.min(this.pattern.length(), MAX_BIT_PARALLEL_LENGTH); index++) {
+      char character = this.pattern.charAt(index);
+      if (character < TABLE_SIZE) {
+        tableMasks[character] = 0;
+      }
+    }
+    otherCharactersCount = 0;
+
+    this.pattern = pattern;
+    if (pattern.length() > MAX_BIT_PARALLEL_LENGTH) {
+      return;
+    }
+
+    // The bit with index `i` of a character's mask is set if the pattern has this character at position `i`.
+    for (int index = 0; index < pattern.length(); index++) {
+      char character = pattern.charAt(index);
+      if (character < TABLE_SIZE) {
+        tableMasks[character] |= 1L << index;
+        continue;
+      }
+
+      int otherIndex = 0;
+      while (otherIndex < otherCharactersCount && otherCharacters[otherIndex] != character) {
+        otherIndex++;
+      }
+      if (otherIndex == otherCharactersCount) {
+        otherCharacters[otherCharactersCount] = character;
+        otherMasks[otherCharactersCount++] = 0;
+      }
+      otherMasks[otherIndex] |= 1L << index;
+    }
+  }
+
+  /**
+   * Measures the difference between the pattern and the given {@code text}.
+   *
+   * @return the number of changes required to get one string from another,
+   * where each change is a single character modification (substitution, deletion or insertion),
+   * or {@code maxDistance + 1} if this number exceeds {@code maxDistance}
+   */
+  public int calculateDistance(String text, int maxDistance) {
+    if (Math.abs(pattern.length() - text.length()) > maxDistance) {
+      return maxDistance + 1;
+    } else if (pattern.isEmpty()) {
+      return text.length();
+    }
+
+    return pattern.length() <= MAX_BIT_PARALLEL_LENGTH
+        ? calculateBitParallelDistance(text, maxDistance)
+        : calculateBandedDistance(text, maxDistance);
+  }
+
+  /**
+   * Computes the last row of the distance matrix column by column, where each column is encoded
+   * with vertical positive and negative deltas {@code positiveVertical} and {@code negativeVertical}.
+   */
+  private int calculateBitParallelDistance(String text, int maxDistance) {
+    long lastBit = 1L << (pattern.length() - 1);
+    long positiveVertical = -1L;
+    long negativeVertical = 0;
+    int distance = pattern.length();
+
+    for (int index = 0; index < text.length(); index++) {
+      long equalityMask = getMask(text.charAt(index));
+      long verticalCandidates = equalityMask | negativeVertical;
+      long horizontalCandidates = (((equalityMask & positiveVertical) + positiveVertical) ^ positiveVertical) | equalityMask;
+      long positiveHorizontal = negativeVertical | ~(horizontalCandidates | positiveVertical);
+      long negativeHorizontal = positiveVertical & horizontalCandidates;
+
+      if ((positiveHorizontal & lastBit) != 0) {
+        distance++;
+      } else if ((negativeHorizontal & lastBit) != 0) {
+        distance--;
+      }
+
+      // Each remaining character can decrease the distance by at most one.
+      if (distance - (text.length() - index - 1) > maxDistance) {
+        return maxDistance + 1;
+      }
+
+      // The first row of the matrix grows by one in each column, so a positive delta is shifted in.
+      positiveHorizontal = (positiveHorizontal << 1) | 1;
+      negativeHorizontal = negativeHorizontal << 1;
+      positiveVertical = negativeHorizontal | ~(verticalCandidates | positiveHorizontal);
+      negativeVertical = positiveHorizontal & verticalCandidates;
+    }
+
+    return distance <= maxDistance ? distance : maxDistance + 1;
+  }
+
+  /**
+   * Computes only cells of the distance matrix which are not further than {@code maxDistance} from its diagonal,
+   * and stops as soon as all cells in a row exceed {@code maxDistance}.
+   */
+  private int calculateBandedDistance(String text, int maxDistance) {
+    int patternLength = pattern.length();
+    int textLength = text.length();
+
+    if (previousRow.length <= textLength) {
+      previousRow = new int[textLength + 1];
+      currentRow = new int[textLength + 1];
+    }
+
+    for (int index = 0; index <= textLength; index++) {
+      previousRow[index] = index;
+    }
+
+    for (int patternIndex = 1; patternIndex <= patternLength; patternIndex++) {
+      int from = Math.max(1, patternIndex - maxDistance);
+      int to = Math.min(textLength, patternIndex + maxDistance);
+
+      // Cells outside of the band are never better than `maxDistance + 1`.
+      currentRow[from - 1] = from == 1 ? patternIndex : maxDistance + 1;
+      int rowMinimum = currentRow[from - 1];
+
+      for (int textIndex = from; textIndex <= to; textIndex++) {
+        int replaceCost = previousRow[textIndex - 1]
+            + (pattern.charAt(patternIndex - 1) == text.charAt(textIndex - 1) ? 0 : 1);
+        int insertCost = previousRow[textIndex] + 1;
+        int deleteCost = currentRow[textIndex - 1] + 1;
+
+        currentRow[textIndex] = Math.min(replaceCost, Math.min(insertCost, deleteCost));
+        rowMinimum = Math.min(rowMinimum, currentRow[textIndex]);
+      }
+
+      if (to < textLength) {
+        currentRow[to + 1] = maxDistance + 1;
+      }
+
+      if (rowMinimum > maxDistance) {
+        return maxDistance + 1;
+      }
+
+      int[] row = previousRow;
+      previousRow = currentRow;
+      currentRow = row;
+    }
+
+    return Math.min(previousRow[textLength], maxDistance + 1);
+  }
+
+  private long getMask(char character) {
+    if (character < TABLE_SIZE) {
+      return tableMasks[character];
+    }
+
+    for (int index = 0; index < otherCharactersCount; index++) {
+      if (otherCharacters[index] == character) {
+        return otherMasks[index];
+      }
+    }
+
+    return 0;
+  }
+}
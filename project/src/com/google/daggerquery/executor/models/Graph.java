@@ -17,11 +17,24 @@ limitations under the License.
 package com.google.daggerquery.executor.models;
 
 import com.google.common.collect.ImmutableSet;
+import java.util.stream.IntStream;
 
 /**
  * The interface representing the graph created by the Dagger SPI plugin.
  *
  * <p>Provides the methods needed to traverse this graph and to execute queries.
+ *
+ * <p>Besides methods working with node names, each graph provides a low-level API based on node ids.
+ * Each node has a unique id in a range from {@code 0} to {@code getNodeCount() - 1}, so algorithms can
+ * store visited nodes in a {@link java.util.BitSet} and iterate over neighbours without any allocations:
+ *
+ * <pre>{@code
+ * for (int index = 0; index < graph.getDependencyCount(nodeId); index++) {
+ *   int dependencyId = graph.getDependency(nodeId, index);
+ * }
+ * }</pre>
+ *
+ * <p>Node ids are assigned in lexicographical order of node names, so sorting ids also sorts names.
  */
 public interface Graph {
 
@@ -45,4 +58,81 @@ public interface Graph {
    */
   ImmutableSet<String> getAllNodes();
 
+  /**
+   * Returns a {@link NodeNameMatcher} over all the nodes presented in the graph.
+   *
+   * <p>A matcher is built on the first call and is reused after that.
+   */
+  NodeNameMatcher getNodeNameMatcher();
+
+  /**
+   * Returns the number of nodes in the graph, all node ids are less than this value.
+   */
+  int getNodeCount();
+
+  /**
+   * Returns an id of the given node or {@code -1} if the node is not presented in the graph.
+   */
+  int getNodeId(String node);
+
+  /**
+   * Returns a name of the node with the given id.
+   */
+  String getNodeName(int nodeId);
+
+  /**
+   * Returns the number of node's dependencies.
+   */
+  int getDependencyCount(int nodeId);
+
+  /**
+   * Returns an id of node's dependency with the given {@code index},
+   * which must be less than {@code getDependencyCount(nodeId)}.
+   */
+  int getDependency(int nodeId, int index);
+
+  /**
+   * Returns the number of node's ancestors.
+   */
+  int getAncestorCount(int nodeId);
+
+  /**
+   * Returns an id of node's ancestor with the given {@code index},
+   * which must be less than {@code getAncestorCount(nodeId)}.
+   */
+  int getAncestor(int nodeId, int index);
+
+  /**
+   * Returns sorted ids of all nodes whose names start with the given {@code prefix}.
+   *
+   * <p>Since node ids are sorted by node names, such ids form a single range, which is found
+   * with two binary searches over node names.
+   */
+  default int[] getNodeIdsWithPrefix(String prefix) {
+    // The first node which is not less than the prefix.
+    int low = 0;
+    int high = getNodeCount();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getNodeName(middle).compareTo(prefix) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    int rangeStart = low;
+
+    // The first node after it which doesn't start with the prefix.
+    high = getNodeCount();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getNodeName(middle).startsWith(prefix)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    return IntStream.range(rangeStart, low).toArray();
+  }
 }
@@ -16,75 +16,81 @@ limitations under the License.
 
 package com.google.daggerquery.executor.models;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
 import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph;
-import com.google.daggerquery.protobuf.autogen.DependencyProto.Dependency;
-import java.util.HashMap;
-import java.util.Map;
-
-import static java.util.stream.Collectors.toSet;
 
 /**
  * Implementation of {@link Graph} that wraps the {@link BindingGraph} generated
  * with <a href="https://developers.google.com/protocol-buffers">protocol buffers library</a>.
+ *
+ * <p>All methods are delegated to a {@link CompactGraph} built from the same {@link BindingGraph}, so node names
+ * are stored only once in its symbol table and the {@link BindingGraph} itself is not kept.
  */
 public class GraphProto implements Graph {
 
-  private BindingGraph bindingGraph;
-  private ImmutableMap<String, ImmutableSet<String>> reversedBindingGraph;
+  private final CompactGraph compactGraph;
 
   public GraphProto(BindingGraph bindingGraph) {
-    this.bindingGraph = bindingGraph;
-    this.reversedBindingGraph = makeBindingReversedGraph(bindingGraph);
+    this.compactGraph = new CompactGraph(bindingGraph);
   }
 
   @Override
   public ImmutableSet<String> getDependencies(String node) {
-    return ImmutableSet.copyOf(bindingGraph.getAdjacencyListMap().get(node).getDependencyList()
-        .stream().map(Dependency::getTarget).sorted().collect(toSet()));
+    return compactGraph.getDependencies(node);
   }
 
   @Override
   public ImmutableSet<String> getAncestors(String node) {
-    return reversedBindingGraph.get(node);
+    return compactGraph.getAncestors(node);
   }
 
   @Override
   public boolean containsNode(String node) {
-    return bindingGraph.getAdjacencyListMap().containsKey(node);
+    return compactGraph.containsNode(node);
   }
 
   @Override
   public ImmutableSet<String> getAllNodes() {
-    return ImmutableSet.copyOf(bindingGraph.getAdjacencyListMap().keySet());
+    return compactGraph.getAllNodes();
+  }
+
+  @Override
+  public NodeNameMatcher getNodeNameMatcher() {
+    return compactGraph.getNodeNameMatcher();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return compactGraph.getNodeCount();
+  }
+
+  @Override
+  public int getNodeId(String node) {
+    return compactGraph.getNodeId(node);
   }
 
-  /**
-   * Makes a reversed binding graph from the given {@code sourceBindingGraph}.
-   *
-   * <p>A reverse graph is created by reversing the direction of each edge of the original graph.
-   */
-  private ImmutableMap<String, ImmutableSet<String>> makeBindingReversedGraph(BindingGraph sourceBindingGraph) {
-    Map<String, ImmutableSet.Builder<String>> reversedGraphModel = new HashMap<>();
-
-    for (String source: sourceBindingGraph.getAdjacencyListMap().keySet()) {
-      reversedGraphModel.put(source, new ImmutableSet.Builder<>());
-    }
-
-    for (String source: sourceBindingGraph.getAdjacencyListMap().keySet()) {
-      for (Dependency dependency: sourceBindingGraph.getAdjacencyListMap().get(source).getDependencyList()) {
-        String target = dependency.getTarget();
-        reversedGraphModel.get(target).add(source);
-      }
-    }
-
-    return ImmutableMap.copyOf(
-      Maps.transformValues(
-        reversedGraphModel,
-        ImmutableSet.Builder::build
-      )
-    );
+  @Override
+  public String getNodeName(int nodeId) {
+    return compactGraph.getNodeName(nodeId);
+  }
+
+  @Override
+  public int getDependencyCount(int nodeId) {
+    return compactGraph.getDependencyCount(nodeId);
+  }
+
+  @Override
+  public int getDependency(int nodeId, int index) {
+    return compactGraph.getDependency(nodeId, index);
+  }
+
+  @Override
+  public int getAncestorCount(int nodeId) {
+    return compactGraph.getAncestorCount(nodeId);
+  }
+
+  @Override
+  public int getAncestor(int nodeId, int index) {
+    return compactGraph.getAncestor(nodeId, index);
   }
 }
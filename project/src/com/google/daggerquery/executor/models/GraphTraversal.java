@@ -0,0 +1,642 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An engine which traverses a {@link Graph} with an explicit stack instead of recursion,
+ * so the depth of a traversal is limited only by the heap, not by the size of the thread's stack.
+ *
+ * <p>Stacks and sets used during a traversal are kept per thread and reused by the next traversal,
+ * so traversing doesn't allocate memory once buffers are large enough for the graph.
+ */
+public class GraphTraversal {
+
+  /**
+   * Receives paths found during a traversal.
+   */
+  public interface PathVisitor {
+
+    /**
+     * Processes a path which consists of the first {@code length} elements of {@code nodeIds}.
+     *
+     * <p>The array is reused by the traversal, so it must not be stored or modified.
+     *
+     * @return {@code true} if the traversal should go on, {@code false} to stop it
+     */
+    boolean visitPath(int[] nodeIds, int length);
+  }
+
+  /**
+   * Receives edges found during a traversal.
+   */
+  public interface EdgeVisitor {
+
+    /**
+     * Processes an edge from {@code source} node to its dependency {@code target}.
+     */
+    void visitEdge(int source, int target);
+  }
+
+  /**
+   * Receives nodes found during a traversal.
+   */
+  public interface NodeVisitor {
+
+    /**
+     * Processes a node which is located at the given {@code depth} from the start of a traversal.
+     */
+    void visitNode(int node, int depth);
+  }
+
+  /**
+   * Defines which edges are followed during a traversal.
+   */
+  public enum Direction {
+    DEPENDENCIES,
+    ANCESTORS
+  }
+
+  private static final int INITIAL_STACK_SIZE = 64;
+
+  // Levels of a breadth-first search with at least this number of nodes are expanded in parallel.
+  private static final int PARALLEL_LEVEL_THRESHOLD = 4096;
+
+  // The number of steps of a depth-first search between two checks of the timeout.
+  private static final int TIMEOUT_CHECK_INTERVAL = 1024;
+
+  private static final ThreadLocal<GraphTraversal> scratchBuffers = ThreadLocal.withInitial(GraphTraversal::new);
+
+  private int[] nodeStack = new int[INITIAL_STACK_SIZE];
+  private int[] edgeIndexStack = new int[INITIAL_STACK_SIZE];
+  private int depth = 0;
+  private final BitSet nodesOnStack = new BitSet();
+
+  // Queues and parents of a bidirectional breadth-first search, each node is added to a queue at most once.
+  private int[] forwardQueue = new int[0];
+  private int[] backwardQueue = new int[0];
+  private int[] forwardParents = new int[0];
+  private int[] backwardParents = new int[0];
+  private final BitSet forwardVisitedNodes = new BitSet();
+  private final BitSet backwardVisitedNodes = new BitSet();
+
+  // Strongly connected components, `componentMarks` is indexed by component ids.
+  private int[] componentIds = new int[0];
+  private int[] componentMarks = new int[0];
+
+  // Is set while a traversal is running, so a nested traversal on the same thread gets its own buffers.
+  private boolean inUse = false;
+
+  private GraphTraversal() {
+  }
+
+  /**
+   * Finds all simple paths between {@code source} and {@code target} nodes in the order of a depth-first search
+   * which follows dependencies of each node in the order given by the {@link Graph}.
+   *
+   * <p>A path never passes through {@code target}, so it appears only once as the last node of each path.
+   */
+  public static void forEachSimplePath(Graph graph, int source, int target, PathVisitor visitor) {
+    forEachSimplePath(graph, source, target, /*timeoutNanos =*/ Long.MAX_VALUE, visitor);
+  }
+
+  /**
+   * Finds all simple paths between {@code source} and {@code target} nodes like
+   * {@link #forEachSimplePath(Graph, int, int, PathVisitor)}, but gives up after {@code timeoutNanos}
+   * or once the current thread is interrupted.
+   *
+   * <p>Before the search, all nodes from which {@code target} can be reached are found with a breadth-first
+   * search over ancestors. The depth-first search never enters other nodes, so it doesn't waste time
+   * on branches which have no paths to {@code target}.
+   *
+   * @return {@code false} if the search was stopped because of the timeout or the interrupt, {@code true} otherwise
+   */
+  public static boolean forEachSimplePath(Graph graph, int source, int target, long timeoutNanos, PathVisitor visitor) {
+    GraphTraversal traversal = acquire();
+    try {
+      return traversal.findSimplePaths(graph, source, target, timeoutNanos, visitor);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  private boolean findSimplePaths(Graph graph, int source, int target, long timeoutNanos, PathVisitor visitor) {
+    long startTime = System.nanoTime();
+
+    ensureCapacity(graph.getNodeCount());
+    findNodesReachingTarget(graph, target);
+    if (!backwardVisitedNodes.get(source)) {
+      return true;
+    }
+
+    push(source);
+
+    for (long step = 1; depth > 0; step++) {
+      if (step % TIMEOUT_CHECK_INTERVAL == 0
+          && (System.nanoTime() - startTime > timeoutNanos || Thread.currentThread().isInterrupted())) {
+        return false;
+      }
+
+      int node = nodeStack[depth - 1];
+
+      if (node == target) {
+        if (!visitor.visitPath(nodeStack, depth)) {
+          return true;
+        }
+        pop();
+        continue;
+      }
+
+      int edgeIndex = edgeIndexStack[depth - 1];
+      if (edgeIndex == graph.getDependencyCount(node)) {
+        pop();
+        continue;
+      }
+
+      edgeIndexStack[depth - 1]++;
+      int nextNode = graph.getDependency(node, edgeIndex);
+      if (!nodesOnStack.get(nextNode) && backwardVisitedNodes.get(nextNode)) {
+        push(nextNode);
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Finds all edges which lie on paths between {@code source} and {@code target} nodes,
+   * in linear time regardless of the number of paths.
+   *
+   * <p>An edge lies on such a path if its source can be reached from {@code source} and {@code target}
+   * can be reached from its target. Like simple paths, these paths never leave {@code target}
+   * and never return to {@code source}.
+   *
+   * <p>Edges are passed to the {@code visitor} grouped by their sources, which are ordered
+   * by their distance from {@code source}.
+   */
+  public static void forEachEdgeOnPaths(Graph graph, int source, int target, EdgeVisitor visitor) {
+    GraphTraversal traversal = acquire();
+    try {
+      traversal.findEdgesOnPaths(graph, source, target, visitor);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  private void findEdgesOnPaths(Graph graph, int source, int target, EdgeVisitor visitor) {
+    ensureCapacity(graph.getNodeCount());
+    findNodesReachingTarget(graph, target);
+    if (source == target || !backwardVisitedNodes.get(source)) {
+      return;
+    }
+
+    // Only nodes which can reach `target` are visited, so each visited node lies on some path.
+    int queueStart = 0;
+    int queueEnd = 0;
+
+    forwardQueue[queueEnd++] = source;
+    forwardVisitedNodes.set(source);
+
+    while (queueStart < queueEnd) {
+      int node = forwardQueue[queueStart++];
+      if (node == target) {
+        continue;
+      }
+
+      for (int index = 0; index < graph.getDependencyCount(node); index++) {
+        int nextNode = graph.getDependency(node, index);
+        if (nextNode == source || !backwardVisitedNodes.get(nextNode)) {
+          continue;
+        }
+
+        visitor.visitEdge(node, nextNode);
+        if (!forwardVisitedNodes.get(nextNode)) {
+          forwardVisitedNodes.set(nextNode);
+          forwardQueue[queueEnd++] = nextNode;
+        }
+      }
+    }
+  }
+
+  /**
+   * Counts paths between {@code source} and {@code target} nodes without enumerating them,
+   * in time linear in the size of the subgraph formed by these paths.
+   *
+   * <p>Like simple paths, these paths never leave {@code target}. Each strongly connected component of the rest
+   * of the subgraph, that is a loop of bindings, is counted as a single node, so the number of paths is always
+   * finite. If there are no such loops, the result equals the number of paths found by {@code forEachSimplePath()}.
+   */
+  public static BigInteger countPaths(Graph graph, int source, int target) {
+    GraphTraversal traversal = acquire();
+    try {
+      return traversal.countPathsBetween(graph, source, target);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  /**
+   * Finds strongly connected components with Tarjan's algorithm, which completes each component only after
+   * all components reachable from it. So the number of paths from a component to {@code target} is computed
+   * as soon as the component is completed: it's the sum of the numbers for all distinct components
+   * its edges lead to.
+   */
+  private BigInteger countPathsBetween(Graph graph, int source, int target) {
+    ensureCapacity(graph.getNodeCount());
+    findNodesReachingTarget(graph, target);
+    if (!backwardVisitedNodes.get(source)) {
+      return BigInteger.ZERO;
+    }
+
+    // Buffers of the bidirectional breadth-first search are not used here, so they are reused.
+    int[] discoveryIndexes = forwardParents;
+    int[] lowLinks = backwardParents;
+    int[] componentStack = forwardQueue;
+    int componentStackSize = 0;
+    int discoveryIndex = 0;
+
+    // The key is a component id.
+    List<BigInteger> pathCounts = new ArrayList<>();
+
+    forwardVisitedNodes.set(source);
+    discoveryIndexes[source] = lowLinks[source] = discoveryIndex++;
+    componentIds[source] = -1;
+    componentStack[componentStackSize++] = source;
+    push(source);
+
+    while (depth > 0) {
+      int node = nodeStack[depth - 1];
+      int edgeIndex = edgeIndexStack[depth - 1];
+
+      // Dependencies of `target` are not followed, so it always forms a component of its own.
+      if (node != target && edgeIndex < graph.getDependencyCount(node)) {
+        edgeIndexStack[depth - 1]++;
+        int nextNode = graph.getDependency(node, edgeIndex);
+
+        // Nodes which can't reach `target` don't lie on any path.
+        if (!backwardVisitedNodes.get(nextNode)) {
+          continue;
+        }
+
+        if (!forwardVisitedNodes.get(nextNode)) {
+          forwardVisitedNodes.set(nextNode);
+          discoveryIndexes[nextNode] = lowLinks[nextNode] = discoveryIndex++;
+          componentIds[nextNode] = -1;
+          componentStack[componentStackSize++] = nextNode;
+          push(nextNode);
+        } else if (componentIds[nextNode] < 0) {
+          lowLinks[node] = Math.min(lowLinks[node], discoveryIndexes[nextNode]);
+        }
+        continue;
+      }
+
+      pop();
+      if (depth > 0) {
+        int parent = nodeStack[depth - 1];
+        lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+      }
+
+      if (lowLinks[node] != discoveryIndexes[node]) {
+        continue;
+      }
+
+      // `node` is the root of a component, and all nodes of the component are on top of the component stack.
+      int componentId = pathCounts.size();
+      int componentStart = componentStackSize;
+      do {
+        componentStart--;
+        componentIds[componentStack[componentStart]] = componentId;
+      } while (componentStack[componentStart] != node);
+
+      componentMarks[componentId] = componentId;
+      BigInteger pathCount = BigInteger.ZERO;
+      for (int index = componentStart; index < componentStackSize; index++) {
+        int member = componentStack[index];
+        if (member == target) {
+          pathCount = BigInteger.ONE;
+          break;
+        }
+
+        for (int edge = 0; edge < graph.getDependencyCount(member); edge++) {
+          int nextNode = graph.getDependency(member, edge);
+          if (!backwardVisitedNodes.get(nextNode) || componentMarks[componentIds[nextNode]] == componentId) {
+            continue;
+          }
+
+          componentMarks[componentIds[nextNode]] = componentId;
+          pathCount = pathCount.add(pathCounts.get(componentIds[nextNode]));
+        }
+      }
+
+      pathCounts.add(pathCount);
+      componentStackSize = componentStart;
+    }
+
+    return pathCounts.get(componentIds[source]);
+  }
+
+  /**
+   * Finds all nodes which can be reached from {@code source} in at most {@code maxDepth} steps
+   * in the given {@code direction}, {@code source} itself is not included.
+   *
+   * <p>Runs a level-synchronous breadth-first search, so nodes are passed to the {@code visitor}
+   * in increasing order of their depth, and nodes of each level in the order of their discovery.
+   */
+  public static void forEachNodeWithinDepth(Graph graph, int source, int maxDepth, Direction direction,
+                                            NodeVisitor visitor) {
+    GraphTraversal traversal = acquire();
+    try {
+      traversal.findNodesWithinDepth(graph, new int[] {source}, maxDepth, direction, /*visitSources =*/ false,
+          PARALLEL_LEVEL_THRESHOLD, visitor);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  /**
+   * Finds all nodes which can be reached from any of {@code sources} in at most {@code maxDepth} steps,
+   * like {@link #forEachNodeWithinDepth(Graph, int, int, Direction, NodeVisitor)} does for a single source.
+   *
+   * <p>All sources form the first level of a single search, so each node is visited once and its depth
+   * is the distance from the closest source. Unlike the single source, a source is visited too if it can be
+   * reached from any source, for example when it's a dependency of another source.
+   */
+  public static void forEachNodeWithinDepth(Graph graph, int[] sources, int maxDepth, Direction direction,
+                                            NodeVisitor visitor) {
+    forEachNodeWithinDepth(graph, sources, maxDepth, direction, PARALLEL_LEVEL_THRESHOLD, visitor);
+  }
+
+  /**
+   * Finds nodes like {@link #forEachNodeWithinDepth(Graph, int[], int, Direction, NodeVisitor)}, but levels
+   * with at least {@code parallelLevelThreshold} nodes are expanded with {@link ParallelLevelExpansion}.
+   */
+  static void forEachNodeWithinDepth(Graph graph, int[] sources, int maxDepth, Direction direction,
+                                     int parallelLevelThreshold, NodeVisitor visitor) {
+    GraphTraversal traversal = acquire();
+    try {
+      traversal.findNodesWithinDepth(graph, sources, maxDepth, direction, /*visitSources =*/ true,
+          parallelLevelThreshold, visitor);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  private void findNodesWithinDepth(Graph graph, int[] sources, int maxDepth, Direction direction,
+                                    boolean visitSources, int parallelLevelThreshold, NodeVisitor visitor) {
+    ensureCapacity(graph.getNodeCount());
+    ParallelLevelExpansion parallelExpansion = null;
+
+    // Sources are expanded only once, at the first level, even if they are visited later.
+    BitSet sourceNodes = backwardVisitedNodes;
+    int queueStart = 0;
+    int queueEnd = 0;
+
+    for (int source: sources) {
+      if (!sourceNodes.get(source)) {
+        forwardQueue[queueEnd++] = source;
+        sourceNodes.set(source);
+      }
+    }
+    if (!visitSources) {
+      forwardVisitedNodes.or(sourceNodes);
+    }
+
+    for (int depth = 1; depth <= maxDepth && queueStart < queueEnd; depth++) {
+      int levelEnd = queueEnd;
+
+      if (ParallelLevelExpansion.isWorthExpanding(levelEnd - queueStart, parallelLevelThreshold)) {
+        if (parallelExpansion == null) {
+          parallelExpansion = new ParallelLevelExpansion(graph, direction);
+        }
+
+        for (int nextNode: parallelExpansion.expand(forwardQueue, queueStart, levelEnd, forwardVisitedNodes)) {
+          forwardVisitedNodes.set(nextNode);
+          if (!sourceNodes.get(nextNode)) {
+            forwardQueue[queueEnd++] = nextNode;
+          }
+          visitor.visitNode(nextNode, depth);
+        }
+        queueStart = levelEnd;
+        continue;
+      }
+
+      for (; queueStart < levelEnd; queueStart++) {
+        int node = forwardQueue[queueStart];
+        int neighbourCount = direction == Direction.DEPENDENCIES
+            ? graph.getDependencyCount(node) : graph.getAncestorCount(node);
+
+        for (int index = 0; index < neighbourCount; index++) {
+          int nextNode = direction == Direction.DEPENDENCIES
+              ? graph.getDependency(node, index) : graph.getAncestor(node, index);
+          if (forwardVisitedNodes.get(nextNode)) {
+            continue;
+          }
+
+          forwardVisitedNodes.set(nextNode);
+          if (!sourceNodes.get(nextNode)) {
+            forwardQueue[queueEnd++] = nextNode;
+          }
+          visitor.visitNode(nextNode, depth);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks all nodes from which {@code target} can be reached in {@code backwardVisitedNodes}.
+   */
+  private void findNodesReachingTarget(Graph graph, int target) {
+    int queueStart = 0;
+    int queueEnd = 0;
+
+    backwardQueue[queueEnd++] = target;
+    backwardVisitedNodes.set(target);
+
+    while (queueStart < queueEnd) {
+      int node = backwardQueue[queueStart++];
+      for (int index = 0; index < graph.getAncestorCount(node); index++) {
+        int nextNode = graph.getAncestor(node, index);
+        if (!backwardVisitedNodes.get(nextNode)) {
+          backwardVisitedNodes.set(nextNode);
+          backwardQueue[queueEnd++] = nextNode;
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds one of the shortest paths between {@code source} and {@code target} nodes
+   * and passes it to the given {@code visitor}.
+   *
+   * <p>Runs a breadth-first search from both ends at once: following dependencies from {@code source}
+   * and following ancestors from {@code target}. Each step expands a whole level of the side
+   * with the smaller frontier, and the search stops as soon as both sides meet.
+   * So usually only a small part of the graph around both nodes is explored.
+   *
+   * @return {@code true} if a path exists
+   */
+  public static boolean findShortestPath(Graph graph, int source, int target, PathVisitor visitor) {
+    GraphTraversal traversal = acquire();
+    try {
+      return traversal.findShortestPathBetween(graph, source, target, visitor);
+    } finally {
+      traversal.release();
+    }
+  }
+
+  private boolean findShortestPathBetween(Graph graph, int source, int target, PathVisitor visitor) {
+    ensureCapacity(graph.getNodeCount());
+
+    int forwardStart = 0;
+    int forwardEnd = 0;
+    int backwardStart = 0;
+    int backwardEnd = 0;
+
+    forwardQueue[forwardEnd++] = source;
+    forwardVisitedNodes.set(source);
+    backwardQueue[backwardEnd++] = target;
+    backwardVisitedNodes.set(target);
+
+    int meetingNode = backwardVisitedNodes.get(source) ? source : -1;
+    while (meetingNode < 0 && forwardStart < forwardEnd && backwardStart < backwardEnd) {
+      if (forwardEnd - forwardStart <= backwardEnd - backwardStart) {
+        int levelEnd = forwardEnd;
+        for (; forwardStart < levelEnd && meetingNode < 0; forwardStart++) {
+          int node = forwardQueue[forwardStart];
+          for (int index = 0; index < graph.getDependencyCount(node); index++) {
+            int nextNode = graph.getDependency(node, index);
+            if (forwardVisitedNodes.get(nextNode)) {
+              continue;
+            }
+
+            forwardVisitedNodes.set(nextNode);
+            forwardParents[nextNode] = node;
+            forwardQueue[forwardEnd++] = nextNode;
+
+            if (backwardVisitedNodes.get(nextNode)) {
+              meetingNode = nextNode;
+              break;
+            }
+          }
+        }
+      } else {
+        int levelEnd = backwardEnd;
+        for (; backwardStart < levelEnd && meetingNode < 0; backwardStart++) {
+          int node = backwardQueue[backwardStart];
+          for (int index = 0; index < graph.getAncestorCount(node); index++) {
+            int nextNode = graph.getAncestor(node, index);
+            if (backwardVisitedNodes.get(nextNode)) {
+              continue;
+            }
+
+            backwardVisitedNodes.set(nextNode);
+            backwardParents[nextNode] = node;
+            backwardQueue[backwardEnd++] = nextNode;
+
+            if (forwardVisitedNodes.get(nextNode)) {
+              meetingNode = nextNode;
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    if (meetingNode < 0) {
+      return false;
+    }
+
+    // The first half of the path is restored backwards, from the meeting node to `source`.
+    for (int node = meetingNode; node != source; node = forwardParents[node]) {
+      push(node);
+    }
+    push(source);
+    reverseStack();
+
+    for (int node = meetingNode; node != target; ) {
+      node = backwardParents[node];
+      push(node);
+    }
+
+    visitor.visitPath(nodeStack, depth);
+    return true;
+  }
+
+  private void ensureCapacity(int nodeCount) {
+    if (forwardQueue.length < nodeCount) {
+      forwardQueue = new int[nodeCount];
+      backwardQueue = new int[nodeCount];
+      forwardParents = new int[nodeCount];
+      backwardParents = new int[nodeCount];
+      componentIds = new int[nodeCount];
+      componentMarks = new int[nodeCount];
+    }
+  }
+
+  private void reverseStack() {
+    for (int left = 0, right = depth - 1; left < right; left++, right--) {
+      int node = nodeStack[left];
+      nodeStack[left] = nodeStack[right];
+      nodeStack[right] = node;
+    }
+  }
+
+  private void push(int node) {
+    if (depth == nodeStack.length) {
+      nodeStack = Arrays.copyOf(nodeStack, depth * 2);
+      edgeIndexStack = Arrays.copyOf(edgeIndexStack, depth * 2);
+    }
+
+    nodeStack[depth] = node;
+    edgeIndexStack[depth] = 0;
+    nodesOnStack.set(node);
+    depth++;
+  }
+
+  private void pop() {
+    depth--;
+    nodesOnStack.clear(nodeStack[depth]);
+  }
+
+  private static GraphTraversal acquire() {
+    GraphTraversal traversal = scratchBuffers.get();
+    if (traversal.inUse) {
+      traversal = new GraphTraversal();
+    }
+
+    traversal.inUse = true;
+    return traversal;
+  }
+
+  /**
+   * Leaves buffers empty for the next traversal, even if this one was stopped in the middle.
+   */
+  private void release() {
+    while (depth > 0) {
+      pop();
+    }
+    forwardVisitedNodes.clear();
+    backwardVisitedNodes.clear();
+
+    inUse = false;
+  }
+}
@@ -0,0 +1,316 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Implementation of {@link Graph} that reads all data directly from a {@link ByteBuffer}, usually a memory-mapped file.
+ *
+ * <p>Nothing is copied to the heap when a graph is opened, so the time and memory needed to open it
+ * don't depend on the size of the graph. A buffer has the following layout, all numbers are 4-byte integers:
+ *
+ * <pre>
+ * nodeCount, edgeCount
+ * nameOffsets[nodeCount + 1]         offsets of node names inside the string table
+ * dependencyOffsets[nodeCount + 1]   compressed sparse rows of the graph
+ * dependencies[edgeCount]
+ * ancestorOffsets[nodeCount + 1]     compressed sparse rows of the reversed graph
+ * ancestors[edgeCount]
+ * string table                       UTF-8 encoded node names sorted in lexicographical order
+ * </pre>
+ *
+ * <p>Since node names are sorted, a node id is found with a binary search over the string table.
+ * Names are compared with the given one directly in the buffer, so nothing is decoded.
+ */
+public class MappedGraph implements Graph {
+
+  private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+  private final ByteBuffer buffer;
+  private final int nodeCount;
+
+  private final int nameOffsetsStart;
+  private final int dependencyOffsetsStart;
+  private final int dependenciesStart;
+  private final int ancestorOffsetsStart;
+  private final int ancestorsStart;
+  private final int namesStart;
+
+  private final Supplier<NodeNameMatcher> nodeNameMatcher = Suppliers.memoize(() -> new NodeNameMatcher(this));
+
+  /**
+   * Creates a graph backed by the given {@code buffer}, which must start with a graph written by {@code write()}.
+   */
+  public MappedGraph(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.nodeCount = buffer.getInt(0);
+
+    int edgeCount = buffer.getInt(Integer.BYTES);
+    nameOffsetsStart = HEADER_SIZE;
+    dependencyOffsetsStart = nameOffsetsStart + (nodeCount + 1) * Integer.BYTES;
+    dependenciesStart = dependencyOffsetsStart + (nodeCount + 1) * Integer.BYTES;
+    ancestorOffsetsStart = dependenciesStart + edgeCount * Integer.BYTES;
+    ancestorsStart = ancestorOffsetsStart + (nodeCount + 1) * Integer.BYTES;
+    namesStart = ancestorsStart + edgeCount * Integer.BYTES;
+  }
+
+  /**
+   * Serializes the given {@link Graph} in a format that can be read by {@link MappedGraph}.
+   *
+   * <p>Node ids of the given graph must be assigned in lexicographical order of node names,
+   * like {@link CompactGraph} does.
+   */
+  public static byte[] write(Graph graph) throws IOException {
+    int nodeCount = graph.getNodeCount();
+
+    ByteArrayOutputStream names = new ByteArrayOutputStream();
+    int[] nameOffsets = new int[nodeCount + 1];
+    int edgeCount = 0;
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      byte[] name = graph.getNodeName(nodeId).getBytes(UTF_8);
+      names.write(name);
+      nameOffsets[nodeId + 1] = nameOffsets[nodeId] + name.length;
+      edgeCount += graph.getDependencyCount(nodeId);
+    }
+
+    ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(byteStream)) {
+      output.writeInt(nodeCount);
+      output.writeInt(edgeCount);
+
+      for (int offset: nameOffsets) {
+        output.writeInt(offset);
+      }
+
+      int offset = 0;
+      output.writeInt(offset);
+      for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+        offset += graph.getDependencyCount(nodeId);
+        output.writeInt(offset);
+      }
+      for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+        for (int index = 0; index < graph.getDependencyCount(nodeId); index++) {
+          output.writeInt(graph.getDependency(nodeId, index));
+        }
+      }
+
+      offset = 0;
+      output.writeInt(offset);
+      for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+        offset += graph.getAncestorCount(nodeId);
+        output.writeInt(offset);
+      }
+      for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+        for (int index = 0; index < graph.getAncestorCount(nodeId); index++) {
+          output.writeInt(graph.getAncestor(nodeId, index));
+        }
+      }
+
+      names.writeTo(output);
+    }
+
+    return byteStream.toByteArray();
+  }
+
+  @Override
+  public ImmutableSet<String> getDependencies(String node) {
+    int nodeId = getNodeId(node);
+    if (nodeId < 0) {
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet.Builder<String> dependencies = ImmutableSet.builderWithExpectedSize(getDependencyCount(nodeId));
+    for (int index = 0; index < getDependencyCount(nodeId); index++) {
+      dependencies.add(getNodeName(getDependency(nodeId, index)));
+    }
+
+    return dependencies.build();
+  }
+
+  @Override
+  public ImmutableSet<String> getAncestors(String node) {
+    int nodeId = getNodeId(node);
+    if (nodeId < 0) {
+      return ImmutableSet.of();
+    }
+
+    ImmutableSet.Builder<String> ancestors = ImmutableSet.builderWithExpectedSize(getAncestorCount(nodeId));
+    for (int index = 0; index < getAncestorCount(nodeId); index++) {
+      ancestors.add(getNodeName(getAncestor(nodeId, index)));
+    }
+
+    return ancestors.build();
+  }
+
+  @Override
+  public boolean containsNode(String node) {
+    return getNodeId(node) >= 0;
+  }
+
+  /**
+   * Returns all the nodes presented in the graph.
+   *
+   * <p>Names are decoded on each call and are not cached.
+   */
+  @Override
+  public ImmutableSet<String> getAllNodes() {
+    ImmutableSet.Builder<String> allNodes = ImmutableSet.builderWithExpectedSize(nodeCount);
+    for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+      allNodes.add(getNodeName(nodeId));
+    }
+
+    return allNodes.build();
+  }
+
+  @Override
+  public NodeNameMatcher getNodeNameMatcher() {
+    return nodeNameMatcher.get();
+  }
+
+  @Override
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  @Override
+  public int getNodeId(String node) {
+    int low = 0;
+    int high = nodeCount - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compareNodeName(middle, node);
+
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -1;
+  }
+
+  @Override
+  public String getNodeName(int nodeId) {
+    int nameStart = buffer.getInt(nameOffsetsStart + nodeId * Integer.BYTES);
+    int nameEnd = buffer.getInt(nameOffsetsStart + (nodeId + 1) * Integer.BYTES);
+
+    // A duplicate is used since reading with a relative position must not affect other threads.
+    ByteBuffer nameBuffer = buffer.duplicate();
+    nameBuffer.position(namesStart + nameStart);
+
+    byte[] name = new byte[nameEnd - nameStart];
+    nameBuffer.get(name);
+    return new String(name, UTF_8);
+  }
+
+  @Override
+  public int getDependencyCount(int nodeId) {
+    return getInt(dependencyOffsetsStart, nodeId + 1) - getInt(dependencyOffsetsStart, nodeId);
+  }
+
+  @Override
+  public int getDependency(int nodeId, int index) {
+    return getInt(dependenciesStart, getInt(dependencyOffsetsStart, nodeId) + index);
+  }
+
+  @Override
+  public int getAncestorCount(int nodeId) {
+    return getInt(ancestorOffsetsStart, nodeId + 1) - getInt(ancestorOffsetsStart, nodeId);
+  }
+
+  @Override
+  public int getAncestor(int nodeId, int index) {
+    return getInt(ancestorsStart, getInt(ancestorOffsetsStart, nodeId) + index);
+  }
+
+  /**
+   * Compares the name of the given node with the given {@code node} like {@link String#compareTo(String)} does.
+   *
+   * <p>The name is decoded from UTF-8 one character at a time and compared with UTF-16 chars of the given node,
+   * so the result matches the order in which names were sorted and no string is created.
+   */
+  private int compareNodeName(int nodeId, String node) {
+    int position = namesStart + buffer.getInt(nameOffsetsStart + nodeId * Integer.BYTES);
+    int nameEnd = namesStart + buffer.getInt(nameOffsetsStart + (nodeId + 1) * Integer.BYTES);
+    int index = 0;
+
+    while (position < nameEnd && index < node.length()) {
+      int firstByte = buffer.get(position) & 0xFF;
+      int codePoint;
+      if (firstByte < 0x80) {
+        codePoint = firstByte;
+        position += 1;
+      } else if (firstByte < 0xE0) {
+        codePoint = (firstByte & 0x1F) << 6 | getContinuation(position + 1);
+        position += 2;
+      } else if (firstByte < 0xF0) {
+        codePoint = (firstByte & 0x0F) << 12 | getContinuation(position + 1) << 6 | getContinuation(position + 2);
+        position += 3;
+      } else {
+        codePoint = (firstByte & 0x07) << 18 | getContinuation(position + 1) << 12
+            | getContinuation(position + 2) << 6 | getContinuation(position + 3);
+        position += 4;
+      }
+
+      if (Character.isBmpCodePoint(codePoint)) {
+        int comparison = Character.compare((char) codePoint, node.charAt(index++));
+        if (comparison != 0) {
+          return comparison;
+        }
+        continue;
+      }
+
+      int comparison = Character.compare(Character.highSurrogate(codePoint), node.charAt(index++));
+      if (comparison != 0) {
+        return comparison;
+      }
+      if (index == node.length()) {
+        return 1;
+      }
+      comparison = Character.compare(Character.lowSurrogate(codePoint), node.charAt(index++));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+
+    if (position < nameEnd) {
+      return 1;
+    }
+    return index < node.length() ? -1 : 0;
+  }
+
+  private int getContinuation(int position) {
+    return buffer.get(position) & 0x3F;
+  }
+
+  private int getInt(int arrayStart, int index) {
+    return buffer.getInt(arrayStart + index * Integer.BYTES);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Implementation of {@link Graph} which merges graphs of several root components into one graph.
+ *
+ * <p>A node or an edge which is presented in several component graphs is stored only once, so a query
+ * is executed once instead of once per component.
+ *
+ * <p>Note that a path in a merged graph may consist of edges from different components.
+ *
+ * <p>Like in {@link CompactGraph}, node names are interned into a {@link SymbolTable} and edges are stored
+ * as compressed sparse rows, see {@link CsrGraph} for details.
+ */
+public class MergedGraph extends CsrGraph {
+
+  public MergedGraph(List<? extends Graph> componentGraphs) {
+    super(collectNodeNames(componentGraphs), nodeIds -> makeDependencyLists(componentGraphs, nodeIds));
+  }
+
+  private static TreeSet<String> collectNodeNames(List<? extends Graph> componentGraphs) {
+    TreeSet<String> sortedNodeNames = new TreeSet<>();
+    for (Graph componentGraph: componentGraphs) {
+      for (int nodeId = 0; nodeId < componentGraph.getNodeCount(); nodeId++) {
+        sortedNodeNames.add(componentGraph.getNodeName(nodeId));
+      }
+    }
+    return sortedNodeNames;
+  }
+
+  /**
+   * Collects dependencies of each node from all components, an edge of several components is repeated
+   * for each of them.
+   */
+  private static int[][] makeDependencyLists(List<? extends Graph> componentGraphs, Map<String, Integer> nodeIds) {
+    // Node ids of each component graph are translated into ids of the merged graph.
+    int[][] mergedNodeIds = new int[componentGraphs.size()][];
+    int[] dependencyCounts = new int[nodeIds.size()];
+    for (int component = 0; component < componentGraphs.size(); component++) {
+      Graph componentGraph = componentGraphs.get(component);
+      mergedNodeIds[component] = new int[componentGraph.getNodeCount()];
+
+      for (int nodeId = 0; nodeId < componentGraph.getNodeCount(); nodeId++) {
+        int mergedNodeId = nodeIds.get(componentGraph.getNodeName(nodeId));
+        mergedNodeIds[component][nodeId] = mergedNodeId;
+        dependencyCounts[mergedNodeId] += componentGraph.getDependencyCount(nodeId);
+      }
+    }
+
+    int[][] dependencyLists = new int[nodeIds.size()][];
+    for (int nodeId = 0; nodeId < dependencyLists.length; nodeId++) {
+      dependencyLists[nodeId] = new int[dependencyCounts[nodeId]];
+    }
+
+    int[] nextIndexes = new int[nodeIds.size()];
+    for (int component = 0; component < componentGraphs.size(); component++) {
+      Graph componentGraph = componentGraphs.get(component);
+      for (int nodeId = 0; nodeId < componentGraph.getNodeCount(); nodeId++) {
+        int source = mergedNodeIds[component][nodeId];
+        for (int index = 0; index < componentGraph.getDependencyCount(nodeId); index++) {
+          int target = mergedNodeIds[component][componentGraph.getDependency(nodeId, index)];
+          dependencyLists[source][nextIndexes[source]++] = target;
+        }
+      }
+    }
+
+    return dependencyLists;
+  }
+}
@@ -0,0 +1,270 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * A class which looks for node names similar to a misspelled one.
+ *
+ * <p>It is used to explain why a node specified by user cannot be found and to suggest the correct names.
+ *
+ * <p>To avoid comparing a misspelled name with every node, an index is built once for all names.
+ * The index maps each <a href="https://en.wikipedia.org/wiki/N-gram">q-gram</a> (a substring of length
+ * {@code GRAM_LENGTH}) to names which contain it. Two strings within edit distance {@code k} share at least
+ * {@code max(firstLength, secondLength) - GRAM_LENGTH + 1 - k * GRAM_LENGTH} q-grams, so only names which
+ * share enough q-grams are compared with {@link EditDistance}, which stops as soon as the limit is exceeded.
+ * Names which are too short for this filter are looked for among names of a similar length.
+ */
+public class NodeNameMatcher {
+
+  public final static int MAX_NUMBER_OF_MISPLACED_LETTERS = 3;
+
+  private final static int GRAM_LENGTH = 3;
+
+  // Names are taken by their indexes, so a matcher over a graph decodes them from the graph on demand.
+  private final IntFunction<String> nodeNames;
+  private final int[] nameLengths;
+
+  // Sorted distinct q-grams and, for each of them, sorted indexes of names which contain it.
+  // An index is repeated as many times as the q-gram occurs in the name.
+  private final long[] grams;
+  private final int[][] gramPostings;
+
+  // Indexes of names sorted by the length of names.
+  private final int[] nodesByLength;
+  private final int[] sortedLengths;
+
+  public NodeNameMatcher(Collection<String> nodeNames) {
+    this(nodeNames.size(), ImmutableList.copyOf(nodeNames)::get);
+  }
+
+  /**
+   * Creates a matcher over all nodes of the given {@code graph}.
+   *
+   * <p>Names are not copied, they are taken from the graph by node ids each time they are compared.
+   */
+  public NodeNameMatcher(Graph graph) {
+    this(graph.getNodeCount(), graph::getNodeName);
+  }
+
+  private NodeNameMatcher(int nodeCount, IntFunction<String> nodeNames) {
+    this.nodeNames = nodeNames;
+    this.nameLengths = new int[nodeCount];
+
+    Map<Long, Integer> gramCounts = new HashMap<>();
+    for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+      String node = nodeNames.apply(nodeIndex);
+      nameLengths[nodeIndex] = node.length();
+      for (int index = 0; index + GRAM_LENGTH <= node.length(); index++) {
+        gramCounts.merge(encodeGram(node, index), 1, Integer::sum);
+      }
+    }
+
+    grams = gramCounts.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    gramPostings = new int[grams.length][];
+    for (int gramIndex = 0; gramIndex < grams.length; gramIndex++) {
+      gramPostings[gramIndex] = new int[gramCounts.get(grams[gramIndex])];
+    }
+
+    // Names are processed in increasing order of their indexes, so all postings stay sorted.
+    int[] postingSizes = new int[grams.length];
+    for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+      String node = nodeNames.apply(nodeIndex);
+      for (int index = 0; index + GRAM_LENGTH <= node.length(); index++) {
+        int gramIndex = Arrays.binarySearch(grams, encodeGram(node, index));
+        gramPostings[gramIndex][postingSizes[gramIndex]++] = nodeIndex;
+      }
+    }
+
+    nodesByLength = new int[nodeCount];
+    Integer[] boxedNodesByLength = new Integer[nodeCount];
+    for (int nodeIndex = 0; nodeIndex < boxedNodesByLength.length; nodeIndex++) {
+      boxedNodesByLength[nodeIndex] = nodeIndex;
+    }
+    Arrays.sort(boxedNodesByLength, (first, second) -> Integer.compare(nameLengths[first], nameLengths[second]));
+
+    sortedLengths = new int[nodeCount];
+    for (int index = 0; index < nodesByLength.length; index++) {
+      nodesByLength[index] = boxedNodesByLength[index];
+      sortedLengths[index] = nameLengths[nodesByLength[index]];
+    }
+  }
+
+  /**
+   * Makes an exception explaining that the given {@code node} cannot be found.
+   *
+   * <p>Returns {@link MisspelledNodeNameException} if there are nodes with a similar name,
+   * otherwise returns {@link IllegalArgumentException}.
+   */
+  public RuntimeException makeNodeNotFoundException(String node) {
+    List<String> closestNodes = findNodesWithClosestName(node);
+    if (closestNodes.isEmpty()) {
+      return new IllegalArgumentException("Specified source node " + node + " doesn't exist.");
+    } else {
+      return new MisspelledNodeNameException(/*nodeNameWithTypo =*/ node, /*correctNodeName =*/ closestNodes);
+    }
+  }
+
+  /**
+   * Finds the closest nodes to the {@code originalNode}.
+   *
+   * <p>For measuring a distance uses <a href = "https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance metric</a>.
+   * It simply calculates the number of changes required to be made to get one sequence from another,
+   * where each change is a single character modification (deletion, insertion or substitution).
+   *
+   * <p>A node can be considered a neighbor only if the distance between it and the given {@code originalNode}
+   * is less than or equal to {@code MAX_NUMBER_OF_MISPLACED_LETTERS}.
+   *
+   * <p>If no nodes with a similar name are found, returns an empty {@link List<String>}.
+   * Otherwise, it returns a {@link List<String>} with nodes with the same distance
+   * in the order in which they were passed to the constructor.
+   */
+  public List<String> findNodesWithClosestName(String originalNode) {
+    int[] candidates = isTooShortForGramFilter(originalNode.length())
+        ? findCandidatesWithSimilarLength(originalNode.length())
+        : findCandidatesWithCommonGrams(originalNode);
+    Arrays.sort(candidates);
+
+    EditDistance editDistance = new EditDistance();
+    editDistance.setPattern(originalNode);
+
+    List<String> closestNodes = new ArrayList<>();
+    for (int nodeIndex: candidates) {
+      String node = nodeNames.apply(nodeIndex);
+      if (editDistance.calculateDistance(node, MAX_NUMBER_OF_MISPLACED_LETTERS) <= MAX_NUMBER_OF_MISPLACED_LETTERS) {
+        closestNodes.add(node);
+      }
+    }
+
+    return closestNodes;
+  }
+
+  /**
+   * Checks if a name with the given length may share no q-grams with a name within the allowed distance.
+   */
+  private boolean isTooShortForGramFilter(int length) {
+    return length - GRAM_LENGTH + 1 - MAX_NUMBER_OF_MISPLACED_LETTERS * GRAM_LENGTH <= 0;
+  }
+
+  /**
+   * Returns indexes of all names whose length differs from the given {@code length}
+   * by no more than {@code MAX_NUMBER_OF_MISPLACED_LETTERS}.
+   */
+  private int[] findCandidatesWithSimilarLength(int length) {
+    int from = lowerBound(sortedLengths, length - MAX_NUMBER_OF_MISPLACED_LETTERS);
+    int to = lowerBound(sortedLengths, length + MAX_NUMBER_OF_MISPLACED_LETTERS + 1);
+    return Arrays.copyOfRange(nodesByLength, from, to);
+  }
+
+  /**
+   * Returns indexes of names which share enough q-grams with the {@code originalNode}
+   * to be within the allowed edit distance.
+   */
+  private int[] findCandidatesWithCommonGrams(String originalNode) {
+    long[] originalGrams = new long[originalNode.length() - GRAM_LENGTH + 1];
+    for (int index = 0; index < originalGrams.length; index++) {
+      originalGrams[index] = encodeGram(originalNode, index);
+    }
+    Arrays.sort(originalGrams);
+
+    // Counts common q-grams as a multiset intersection: a q-gram which occurs twice
+    // in one string and once in another is counted only once.
+    int[] commonGramCounts = new int[nameLengths.length];
+    int[] touchedNodes = new int[nameLengths.length];
+    int touchedNodesCount = 0;
+
+    for (int gramStart = 0; gramStart < originalGrams.length; ) {
+      int gramEnd = gramStart;
+      while (gramEnd < originalGrams.length && originalGrams[gramEnd] == originalGrams[gramStart]) {
+        gramEnd++;
+      }
+
+      int gramIndex = Arrays.binarySearch(grams, originalGrams[gramStart]);
+      if (gramIndex >= 0) {
+        int[] posting = gramPostings[gramIndex];
+        for (int postingStart = 0; postingStart < posting.length; ) {
+          int postingEnd = postingStart;
+          while (postingEnd < posting.length && posting[postingEnd] == posting[postingStart]) {
+            postingEnd++;
+          }
+
+          int nodeIndex = posting[postingStart];
+          if (commonGramCounts[nodeIndex] == 0) {
+            touchedNodes[touchedNodesCount++] = nodeIndex;
+          }
+          commonGramCounts[nodeIndex] += Math.min(gramEnd - gramStart, postingEnd - postingStart);
+
+          postingStart = postingEnd;
+        }
+      }
+
+      gramStart = gramEnd;
+    }
+
+    int[] candidates = new int[touchedNodesCount];
+    int candidatesCount = 0;
+    for (int index = 0; index < touchedNodesCount; index++) {
+      int nodeIndex = touchedNodes[index];
+      int length = nameLengths[nodeIndex];
+      int requiredCommonGrams =
+          Math.max(length, originalNode.length()) - GRAM_LENGTH + 1 - MAX_NUMBER_OF_MISPLACED_LETTERS * GRAM_LENGTH;
+
+      if (Math.abs(length - originalNode.length()) <= MAX_NUMBER_OF_MISPLACED_LETTERS
+          && commonGramCounts[nodeIndex] >= requiredCommonGrams) {
+        candidates[candidatesCount++] = nodeIndex;
+      }
+    }
+
+    return Arrays.copyOf(candidates, candidatesCount);
+  }
+
+  /**
+   * Packs {@code GRAM_LENGTH} characters of the {@code string} starting from {@code index} into a single number.
+   */
+  private static long encodeGram(String string, int index) {
+    long gram = 0;
+    for (int offset = 0; offset < GRAM_LENGTH; offset++) {
+      gram = (gram << Character.SIZE) | string.charAt(index + offset);
+    }
+    return gram;
+  }
+
+  /**
+   * Returns the first index in the sorted {@code array} whose value is not less than the {@code value}.
+   */
+  private static int lowerBound(int[] array, int value) {
+    int low = 0;
+    int high = array.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (array[middle] < value) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.daggerquery.executor.models.GraphTraversal.Direction;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Expands levels of a breadth-first search in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+ *
+ * <p>A level is split into chunks which are expanded independently. Each newly found node is claimed
+ * by the first chunk which reaches it, with an atomic compare-and-set. So merging chunks in their order
+ * gives exactly the same next level as a sequential expansion, and results stay deterministic.
+ *
+ * <p>Nodes visited on previous levels are only read during an expansion and are marked by the calling thread
+ * after it, so a plain {@link BitSet} can be shared between chunks.
+ */
+class ParallelLevelExpansion {
+
+  // Chunks smaller than this are not worth a separate task.
+  private static final int MIN_CHUNK_SIZE = 512;
+
+  private final Graph graph;
+  private final Direction direction;
+
+  // Contains `index + 1` of the first chunk which found a node, or zero if no chunk found it yet.
+  private final AtomicIntegerArray claimingChunks;
+
+  ParallelLevelExpansion(Graph graph, Direction direction) {
+    this.graph = graph;
+    this.direction = direction;
+    this.claimingChunks = new AtomicIntegerArray(graph.getNodeCount());
+  }
+
+  /**
+   * Returns {@code true} if a level with the given number of nodes should be expanded in parallel.
+   */
+  static boolean isWorthExpanding(int levelSize, int threshold) {
+    return levelSize >= threshold && Runtime.getRuntime().availableProcessors() > 1;
+  }
+
+  /**
+   * Finds all nodes which are adjacent to nodes in {@code queue} between {@code levelStart} and {@code levelEnd}
+   * and are not in {@code visitedNodes}.
+   *
+   * @return new nodes in the order of their discovery by a sequential expansion
+   */
+  int[] expand(int[] queue, int levelStart, int levelEnd, BitSet visitedNodes) {
+    int levelSize = levelEnd - levelStart;
+    int chunkCount = Math.max(1, Math.min(levelSize / MIN_CHUNK_SIZE, 4 * Runtime.getRuntime().availableProcessors()));
+    int[][] chunkResults = new int[chunkCount][];
+
+    IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+      int chunkStart = levelStart + (int) ((long) levelSize * chunk / chunkCount);
+      int chunkEnd = levelStart + (int) ((long) levelSize * (chunk + 1) / chunkCount);
+      chunkResults[chunk] = expandChunk(queue, chunkStart, chunkEnd, chunk, visitedNodes);
+    });
+
+    int resultSize = 0;
+    int[] result = new int[0];
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      for (int node: chunkResults[chunk]) {
+        // The node may be claimed later by a chunk with a smaller index.
+        if (claimingChunks.get(node) != chunk + 1) {
+          continue;
+        }
+
+        if (resultSize == result.length) {
+          result = Arrays.copyOf(result, Math.max(16, resultSize * 2));
+        }
+        result[resultSize++] = node;
+      }
+    }
+
+    return Arrays.copyOf(result, resultSize);
+  }
+
+  private int[] expandChunk(int[] queue, int chunkStart, int chunkEnd, int chunk, BitSet visitedNodes) {
+    int[] foundNodes = new int[16];
+    int foundNodesCount = 0;
+
+    for (int queueIndex = chunkStart; queueIndex < chunkEnd; queueIndex++) {
+      int node = queue[queueIndex];
+      int neighbourCount = direction == Direction.DEPENDENCIES
+          ? graph.getDependencyCount(node) : graph.getAncestorCount(node);
+
+      for (int index = 0; index < neighbourCount; index++) {
+        int nextNode = direction == Direction.DEPENDENCIES
+            ? graph.getDependency(node, index) : graph.getAncestor(node, index);
+        if (visitedNodes.get(nextNode) || !claim(nextNode, chunk)) {
+          continue;
+        }
+
+        if (foundNodesCount == foundNodes.length) {
+          foundNodes = Arrays.copyOf(foundNodes, foundNodesCount * 2);
+        }
+        foundNodes[foundNodesCount++] = nextNode;
+      }
+    }
+
+    return Arrays.copyOf(foundNodes, foundNodesCount);
+  }
+
+  /**
+   * Claims the given {@code node} for the {@code chunk} unless it was already claimed by this chunk
+   * or by a chunk with a smaller index.
+   */
+  private boolean claim(int node, int chunk) {
+    while (true) {
+      int claimingChunk = claimingChunks.get(node);
+      if (claimingChunk != 0 && claimingChunk <= chunk + 1) {
+        return false;
+      }
+
+      if (claimingChunks.compareAndSet(node, claimingChunk, chunk + 1)) {
+        return true;
+      }
+    }
+  }
+}
@@ -18,18 +18,14 @@ package com.google.daggerquery.executor.models;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import java.util.ArrayDeque;
+import com.google.common.collect.Range;
+import java.math.BigInteger;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import static java.util.stream.Collectors.toList;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
 
 /**
  * A class which represents a query.
@@ -43,34 +39,56 @@ public class Query {
 
   private final static String DEPS_QUERY_NAME = "deps";
   private final static String ALLPATHS_QUERY_NAME = "allpaths";
+  private final static String ALLPATHSGRAPH_QUERY_NAME = "allpathsgraph";
+  private final static String COUNTPATHS_QUERY_NAME = "countpaths";
   private final static String SOMEPATH_QUERY_NAME = "somepath";
   private final static String RDEPS_QUERY_NAME = "rdeps";
   private final static String EXISTS_QUERY_NAME = "exists";
 
-  private final static int MAX_NUMBER_OF_MISPLACED_LETTERS = 3;
+  /**
+   * A source of `deps` and `rdeps` queries which ends with this suffix is a pattern, it matches all nodes
+   * whose names start with the rest of the source, for example: "com.google.payments.*".
+   */
+  private final static String WILDCARD = "*";
 
   /**
-   * The key is the name of supported query and the value is the number of parameters,
-   * required by query with such name.
+   * Limits for `allpaths` query, the number of paths may grow exponentially with the size of a graph.
    */
-  private final static ImmutableMap<String, Integer> supportedQueries = ImmutableMap.<String, Integer>builder()
-      .put(DEPS_QUERY_NAME, 1)
-      .put(ALLPATHS_QUERY_NAME, 2)
-      .put(SOMEPATH_QUERY_NAME, 2)
-      .put(RDEPS_QUERY_NAME, 1)
-      .put(EXISTS_QUERY_NAME, 1)
-      .build();
+  public final static int MAX_NUMBER_OF_PATHS = 10_000;
+  public final static Duration ALLPATHS_TIMEOUT = Duration.ofSeconds(10);
+
+  /**
+   * The key is the name of supported query and the value is the range of the number of parameters,
+   * accepted by query with such name.
+   */
+  private final static ImmutableMap<String, Range<Integer>> supportedQueries =
+      ImmutableMap.<String, Range<Integer>>builder()
+          .put(DEPS_QUERY_NAME, Range.closed(1, 2))
+          .put(ALLPATHS_QUERY_NAME, Range.singleton(2))
+          .put(ALLPATHSGRAPH_QUERY_NAME, Range.singleton(2))
+          .put(COUNTPATHS_QUERY_NAME, Range.singleton(2))
+          .put(SOMEPATH_QUERY_NAME, Range.singleton(2))
+          .put(RDEPS_QUERY_NAME, Range.closed(1, 2))
+          .put(EXISTS_QUERY_NAME, Range.singleton(1))
+          .build();
 
   private String name;
   private String[] parameters;
 
+  // The maximum distance to nodes found by `deps` and `rdeps` queries, set with their optional second parameter.
+  private int depth = 1;
+
   /**
    * Creates an instance of {@link Query} with specified type and parameters.
    *
    * <p>Checks that passed arguments are correct and not {@code null}. The {@code parameters} argument is
-   * correct when its length equals to the value in {@code supportedQueries}.
+   * correct when its length is in the range from {@code supportedQueries}.
    *
-   * @throws IllegalArgumentException if number of parameters is invalid or query's name is invalid
+   * <p>`deps` and `rdeps` queries accept an optional second parameter, which is a positive depth of the search.
+   * Their source can also be a pattern with a single trailing wildcard.
+   *
+   * @throws IllegalArgumentException if number of parameters is invalid, query's name is invalid, depth is invalid
+   * or a pattern is invalid
    * @throws NullPointerException if any of arguments are equal to {@code null}
    */
   public Query(String typeName, String... parameters) {
@@ -82,12 +100,24 @@ public class Query {
 
     name = typeName.toLowerCase();
 
-    if (supportedQueries.get(name) != parameters.length) {
+    Range<Integer> numberOfParameters = supportedQueries.get(name);
+    if (!numberOfParameters.contains(parameters.length)) {
+      String expectedNumber = numberOfParameters.lowerEndpoint().equals(numberOfParameters.upperEndpoint())
+          ? numberOfParameters.lowerEndpoint().toString()
+          : "from " + numberOfParameters.lowerEndpoint() + " to " + numberOfParameters.upperEndpoint();
       String exceptionMessage = "The number of passed parameters is incorrect. Expected: "
-                                  + supportedQueries.get(name) + ", got: " + parameters.length + ".";
+                                  + expectedNumber + ", got: " + parameters.length + ".";
       throw new IllegalArgumentException(exceptionMessage);
     }
 
+    if ((name.equals(DEPS_QUERY_NAME) || name.equals(RDEPS_QUERY_NAME)) && parameters.length == 2) {
+      depth = parseDepth(parameters[1]);
+    }
+
+    if (isPattern(parameters[0])) {
+      checkPattern(parameters[0]);
+    }
+
     this.parameters = parameters;
   }
 
@@ -98,79 +128,106 @@ public class Query {
    * <p>For all queries return a list with strings. The content of the strings depends on a query name.
    *
    * <ul>
-   * <li>For `deps` query each string represents exactly one dependency.
+   * <li>For `deps` query each string represents exactly one dependency. If depth is specified, transitive
+   * dependencies which are not further than depth from {@code source} are returned, closer nodes go first.
+   * <li>For `rdeps` query the same is done for ancestors.
+   * <li>If the source of `deps` or `rdeps` query is a pattern, nodes are found from all matching nodes at once,
+   * the depth of a node is the distance from the closest matching node. A matching node is returned only if it
+   * can be reached from a matching node, for example if it's a dependency of another matching node.
    * <li>For `allpaths` query each string contains a path between {@code source} and {@code target} nodes.
    * The connection between nodes is shown with the construction '->'. For example, one of the possible paths
    * may look like this: "com.google.First -> com.google.Second -> com.google.Third".
+   * <li>For `allpathsgraph` query each string contains one edge which lies on some path between {@code source}
+   * and {@code target} nodes, for example: "com.google.First -> com.google.Second". Unlike `allpaths`,
+   * the size of the result doesn't grow with the number of paths.
+   * <li>For `countpaths` query the only string contains the number of paths between {@code source}
+   * and {@code target} nodes, where each loop of bindings is counted as a single node.
+   * <li>For `somepath` query the only string contains one of the shortest paths between {@code source}
+   * and {@code target} nodes in the same format.
    * </ul>
    *
    * @throws MisspelledNodeNameException if the specified source node contains a typo
    * and can be corrected in no more than three steps
    *
+   * @throws QueryLimitExceededException if `allpaths` query finds more than {@code MAX_NUMBER_OF_PATHS} paths
+   * or runs longer than {@code ALLPATHS_TIMEOUT}
+   *
    * @throws IllegalArgumentException if specified source node doesn't exist
    */
   public ImmutableList<String> execute(Graph bindingGraph) {
     switch (name) {
-      case DEPS_QUERY_NAME: {
-        String source = parameters[0];
-
-        checkNodeForCorrectness(source, bindingGraph);
-
-        ImmutableList<String> deps = bindingGraph.getDependencies(source).asList();
-
-        if (deps.isEmpty()) {
-          throw new NoSuchElementException("Nothing found, list with results is empty.");
-        }
-
-        return deps;
+      case DEPS_QUERY_NAME:
+      case RDEPS_QUERY_NAME: {
+        return checkResultsAreNotEmpty(executeWithDepths(bindingGraph).keySet().asList());
       }
       case ALLPATHS_QUERY_NAME: {
         String source = parameters[0];
 
-        checkNodeForCorrectness(source, bindingGraph);
+        int sourceId = checkNodeForCorrectness(source, bindingGraph);
 
         String target = parameters[1];
-        Set<String> visitedNodes = new HashSet<>();
-        ImmutableList.Builder<Path> result = new ImmutableList.Builder<>();
-        Path path = new Path<>();
-
-        findAllPaths(source, target, path, bindingGraph, visitedNodes, result);
-
-        if (result.build().isEmpty() || source.equals(target)) {
-          throw new NoSuchElementException("Nothing found, list with results is empty.");
+        int targetId = bindingGraph.getNodeId(target);
+        List<String> result = new ArrayList<>();
+
+        if (targetId >= 0 && sourceId != targetId) {
+          boolean isCompleted = GraphTraversal.forEachSimplePath(bindingGraph, sourceId, targetId,
+              ALLPATHS_TIMEOUT.toNanos(), (nodeIds, length) -> {
+                result.add(makePathString(nodeIds, length, bindingGraph));
+                return result.size() <= MAX_NUMBER_OF_PATHS;
+              });
+
+          if (result.size() > MAX_NUMBER_OF_PATHS) {
+            throw new QueryLimitExceededException("There are more than " + MAX_NUMBER_OF_PATHS
+                + " paths between specified nodes, try `somepath` query instead.");
+          } else if (!isCompleted) {
+            throw new QueryLimitExceededException("Search of all paths between specified nodes took longer than "
+                + ALLPATHS_TIMEOUT.getSeconds() + " seconds, try `somepath` query instead.");
+          }
         }
 
-        return ImmutableList.copyOf(result.build().stream().map(Path::toString).collect(toList()));
+        return checkResultsAreNotEmpty(ImmutableList.copyOf(result));
       }
-      case SOMEPATH_QUERY_NAME: {
+      case ALLPATHSGRAPH_QUERY_NAME: {
+        ImmutableList.Builder<String> edges = new ImmutableList.Builder<>();
+        forEachResult(bindingGraph, edges::add);
+
+        return checkResultsAreNotEmpty(edges.build());
+      }
+      case COUNTPATHS_QUERY_NAME: {
         String source = parameters[0];
 
-        checkNodeForCorrectness(source, bindingGraph);
+        int sourceId = checkNodeForCorrectness(source, bindingGraph);
 
         String target = parameters[1];
-        Set<String> visitedNodes = new HashSet<>();
-        Path path = new Path<>();
-
-        findSomePath(source, target, path, bindingGraph, visitedNodes);
-
-        if (path.isEmpty() || source.equals(target)) {
-          throw new NoSuchElementException("Nothing found, list with results is empty.");
+        int targetId = bindingGraph.getNodeId(target);
+        ImmutableList.Builder<String> result = new ImmutableList.Builder<>();
+
+        if (targetId >= 0 && sourceId != targetId) {
+          BigInteger numberOfPaths = GraphTraversal.countPaths(bindingGraph, sourceId, targetId);
+          if (numberOfPaths.signum() > 0) {
+            result.add(numberOfPaths.toString());
+          }
         }
 
-        return ImmutableList.copyOf(Arrays.asList(path.toString()));
+        return checkResultsAreNotEmpty(result.build());
       }
-      case RDEPS_QUERY_NAME: {
+      case SOMEPATH_QUERY_NAME: {
         String source = parameters[0];
 
-        checkNodeForCorrectness(source, bindingGraph);
-
-        ImmutableList<String> rdeps = bindingGraph.getAncestors(source).asList();
+        int sourceId = checkNodeForCorrectness(source, bindingGraph);
 
-        if (rdeps.isEmpty()) {
-          throw new NoSuchElementException("Nothing found, list with results is empty.");
+        String target = parameters[1];
+        int targetId = bindingGraph.getNodeId(target);
+        ImmutableList.Builder<String> result = new ImmutableList.Builder<>();
+
+        if (targetId >= 0 && sourceId != targetId) {
+          GraphTraversal.findShortestPath(bindingGraph, sourceId, targetId, (nodeIds, length) -> {
+            result.add(makePathString(nodeIds, length, bindingGraph));
+            return false;
+          });
         }
 
-        return rdeps;
+        return checkResultsAreNotEmpty(result.build());
       }
       case EXISTS_QUERY_NAME: {
         String source = parameters[0];
@@ -184,202 +241,300 @@ public class Query {
   }
 
   /**
-   * Represents a path between nodes of type {@code NodeT}.
+   * Returns {@code true} if results of this query can be found one by one with {@code forEachResult()}.
    *
-   * <p>Supports operations of adding a new node to the back and removing the last node.
-   *
-   * <p>Uses delimiter '->' for constructing the string representation of all data.
+   * <p>These are `deps`, `rdeps` and `allpathsgraph` queries, the number of their results is limited
+   * only by the size of a graph. Other queries have a single result, except for `allpaths` query,
+   * which may fail because of {@code MAX_NUMBER_OF_PATHS} only after it has found its paths.
    */
-  private static class Path<NodeT> {
-    private Deque<NodeT> nodesDeque = new ArrayDeque<>();
-
-    Path() {
-    }
-
-    Path(Path<NodeT> path) {
-      nodesDeque = new ArrayDeque<>(path.nodesDeque);
-    }
-
-    void addLast(NodeT element) {
-      nodesDeque.addLast(element);
-    }
-
-    NodeT removeLast() {
-      return nodesDeque.removeLast();
-    }
-
-    NodeT getLast() {
-      return nodesDeque.getLast();
-    }
-
-    boolean isEmpty() {
-      return nodesDeque.isEmpty();
-    }
-
-    @Override
-    public String toString() {
-      return String.join(" -> ", nodesDeque.stream().map(NodeT::toString).collect(Collectors.toList()));
-    }
+  public boolean hasLazyResults() {
+    return name.equals(DEPS_QUERY_NAME) || name.equals(RDEPS_QUERY_NAME) || name.equals(ALLPATHSGRAPH_QUERY_NAME);
   }
 
   /**
-   * Traverses a {@link Graph} starting from {@code source} node to find all paths between nodes.
+   * Checks that this query has results on a {@link Graph} without finding them.
    *
-   * <p>Puts all processed nodes in a {@code visitedNodes} set to avoid loops. Constructs a {@code path} which is
-   * an instance of {@link Path<String>}. At each recursive level this variable contains a correct path in a graph from
-   * some root node which was passed in the first call and {@code target} node which is the same for all calls.
+   * <p>Throws the same exceptions as {@code execute()} does, so a query which passes the check
+   * can be executed with {@code forEachResult()}.
    *
-   * <p>As the result fills provided {@link ImmutableList.Builder<Path>} {@code allPaths} with all possible paths between
-   * root and target nodes.
+   * @throws NoSuchElementException if the query has no results
+   * @throws UnsupportedOperationException if results of this query cannot be found lazily
    */
-  private void findAllPaths(String source, String target, Path path, Graph bindingGraph,
-                            Set<String> visitedNodes, ImmutableList.Builder<Path> allPaths) {
-    path.addLast(source);
-
-    // If we've already found a path from `source` to `target`, we can stop and not go deeper.
-    if (source.equals(target)) {
-      allPaths.add(new Path<>(path));
-      path.removeLast();
-      return;
-    }
-
-    visitedNodes.add(source);
-    for (String nextNode: bindingGraph.getDependencies(source)) {
-      if (visitedNodes.contains(nextNode)) {
-        continue;
+  public void checkHasResults(Graph bindingGraph) {
+    boolean hasResults;
+    switch (name) {
+      case DEPS_QUERY_NAME:
+      case RDEPS_QUERY_NAME: {
+        boolean isDeps = name.equals(DEPS_QUERY_NAME);
+        int[] sourceIds = findSourceIds(bindingGraph);
+
+        // Nodes at depth 1 are returned anyway, except for a single source which depends on itself.
+        hasResults = false;
+        for (int sourceIndex = 0; sourceIndex < sourceIds.length && !hasResults; sourceIndex++) {
+          int sourceId = sourceIds[sourceIndex];
+          int neighbourCount = isDeps
+              ? bindingGraph.getDependencyCount(sourceId) : bindingGraph.getAncestorCount(sourceId);
+          for (int index = 0; index < neighbourCount && !hasResults; index++) {
+            int neighbour = isDeps
+                ? bindingGraph.getDependency(sourceId, index) : bindingGraph.getAncestor(sourceId, index);
+            hasResults = sourceIds.length > 1 || neighbour != sourceId;
+          }
+        }
+        break;
       }
+      case ALLPATHSGRAPH_QUERY_NAME: {
+        int sourceId = checkNodeForCorrectness(parameters[0], bindingGraph);
+        int targetId = bindingGraph.getNodeId(parameters[1]);
 
-      findAllPaths(nextNode, target, path, bindingGraph, visitedNodes, allPaths);
+        hasResults = targetId >= 0 && sourceId != targetId
+            && GraphTraversal.findShortestPath(bindingGraph, sourceId, targetId, (nodeIds, length) -> false);
+        break;
+      }
+      default:
+        throw new UnsupportedOperationException("Results of `" + name + "` query cannot be found lazily.");
     }
 
-    visitedNodes.remove(source);
-    path.removeLast();
+    if (!hasResults) {
+      checkResultsAreNotEmpty(ImmutableList.of());
+    }
   }
 
   /**
-   * Traverses a {@link Graph} starting from {@code source} node to find some path between nodes.
+   * Finds results of this query on a {@link Graph} and passes them to the given {@code consumer} one by one,
+   * in the same order as {@code execute()} returns them. Results are not collected.
    *
-   * <p>Finds the first path from {@code source} node passed in the first call and
-   * {@code target} node, which is the same for all calls. Constructs this {@code path}
-   * like an instance of {@link Path<String>}. When this path is found, stops going deeper.
+   * <p>Unlike {@code execute()}, doesn't throw an exception if there are no results.
    *
-   * <p>Returns boolean value which indicates if we have already constructed a path or we have to continue execution.
+   * @throws MisspelledNodeNameException if the specified source node contains a typo
+   * and can be corrected in no more than three steps
    *
-   * <p>Puts all processed nodes in a {@code visitedNodes} set to avoid loops.
+   * @throws IllegalArgumentException if specified source node doesn't exist
+   * @throws UnsupportedOperationException if results of this query cannot be found lazily
    */
-  private boolean findSomePath(String source, String target, Path path,
-                               Graph bindingGraph, Set<String> visitedNodes) {
-    path.addLast(source);
-
-    // Checks if we've already constructed some path from `source` to `target` and don't need to go deeper.
-    if (path.getLast().equals(target)) {
-      return true;
-    }
-
-    visitedNodes.add(source);
-    for (String nextNode: bindingGraph.getDependencies(source)) {
-      if (visitedNodes.contains(nextNode)) {
-        continue;
+  public void forEachResult(Graph bindingGraph, Consumer<String> consumer) {
+    switch (name) {
+      case DEPS_QUERY_NAME:
+      case RDEPS_QUERY_NAME: {
+        forEachNodeWithinDepth(bindingGraph, (node, nodeDepth) -> consumer.accept(bindingGraph.getNodeName(node)));
+        return;
       }
+      case ALLPATHSGRAPH_QUERY_NAME: {
+        int sourceId = checkNodeForCorrectness(parameters[0], bindingGraph);
+        int targetId = bindingGraph.getNodeId(parameters[1]);
 
-      if (findSomePath(nextNode, target, path, bindingGraph, visitedNodes)) {
-        return true;
+        if (targetId >= 0) {
+          GraphTraversal.forEachEdgeOnPaths(bindingGraph, sourceId, targetId, (edgeSource, edgeTarget) ->
+              consumer.accept(bindingGraph.getNodeName(edgeSource) + " -> " + bindingGraph.getNodeName(edgeTarget)));
+        }
+        return;
       }
     }
 
-    visitedNodes.remove(source);
-    path.removeLast();
-
-    return false;
+    throw new UnsupportedOperationException("Results of `" + name + "` query cannot be found lazily.");
   }
 
   /**
-   * Checks if the passed {@code node} is in the {@link Graph} or if the user misspelled the node's name.
+   * Executes `deps` or `rdeps` query on a {@link Graph} and returns found nodes with their depths.
    *
-   * <p>If the passed node is correct, does nothing.
-   * Otherwise, it throws an exception, the type of which depends on the node's name.
+   * <p>Nodes are ordered by their depth, direct dependencies or ancestors have depth 1.
    *
-   * @throws MisspelledNodeNameException if specified source node contains a typo
-   * and can be corrected in no more than {@code MAX_NUMBER_OF_MISPLACED_LETTERS} steps
+   * @throws MisspelledNodeNameException if the specified source node contains a typo
+   * and can be corrected in no more than three steps
    *
    * @throws IllegalArgumentException if specified source node doesn't exist
+   * @throws UnsupportedOperationException if this query is neither `deps` nor `rdeps`
    */
-  private void checkNodeForCorrectness(String node, Graph bindingGraph) {
-    if (bindingGraph.containsNode(node)) {
-      return;
+  public ImmutableMap<String, Integer> executeWithDepths(Graph bindingGraph) {
+    if (!name.equals(DEPS_QUERY_NAME) && !name.equals(RDEPS_QUERY_NAME)) {
+      throw new UnsupportedOperationException("Depths are supported only by `deps` and `rdeps` queries.");
     }
 
-    // The specified node could not be found on the graph, we need to check for typos.
-    List<String> closestNodes = findNodesWithClosestName(node, bindingGraph.getAllNodes());
-    if (closestNodes.isEmpty()) {
-      throw new IllegalArgumentException("Specified source node " + node + " doesn't exist.");
+    ImmutableMap.Builder<String, Integer> nodeDepths = ImmutableMap.builder();
+    forEachNodeWithinDepth(bindingGraph,
+        (node, nodeDepth) -> nodeDepths.put(bindingGraph.getNodeName(node), nodeDepth));
+
+    return nodeDepths.build();
+  }
+
+  /**
+   * Finds nodes of `deps` or `rdeps` query and passes them to the given {@code visitor} ordered by their depth.
+   */
+  private void forEachNodeWithinDepth(Graph bindingGraph, GraphTraversal.NodeVisitor visitor) {
+    GraphTraversal.Direction direction = name.equals(DEPS_QUERY_NAME)
+        ? GraphTraversal.Direction.DEPENDENCIES : GraphTraversal.Direction.ANCESTORS;
+
+    int[] sourceIds = findSourceIds(bindingGraph);
+    if (hasSourcePattern()) {
+      GraphTraversal.forEachNodeWithinDepth(bindingGraph, sourceIds, depth, direction, visitor);
     } else {
-      throw new MisspelledNodeNameException(/*nodeNameWithTypo =*/ node, /*correctNodeName =*/ closestNodes);
+      GraphTraversal.forEachNodeWithinDepth(bindingGraph, sourceIds[0], depth, direction, visitor);
     }
   }
 
   /**
-   * Finds the closest nodes in a given {@link Set<String>} to the {@code originalNode}.
+   * Returns ids of all nodes matching the source pattern or the id of the source node.
    *
-   * <p>For measuring a distance uses <a href = "https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance metric</a>.
-   * It simply calculates the number of changes required to be made to get one sequence from another,
-   * where each change is a single character modification (deletion, insertion or substitution).
+   * @throws MisspelledNodeNameException if the source node contains a typo
+   * @throws IllegalArgumentException if the source node doesn't exist or no nodes match the pattern
+   */
+  private int[] findSourceIds(Graph bindingGraph) {
+    return hasSourcePattern()
+        ? findNodesMatchingPattern(parameters[0], bindingGraph)
+        : new int[] {checkNodeForCorrectness(parameters[0], bindingGraph)};
+  }
+
+  /**
+   * Parses the depth of `deps` and `rdeps` queries.
    *
-   * <p>A node can be considered a neighbor only if the distance between it and the given {@code originalNode}
-   * is less than or equal to {@code MAX_NUMBER_OF_MISPLACED_LETTERS}.
+   * @throws IllegalArgumentException if the depth is not a positive integer
+   */
+  private static int parseDepth(String depth) {
+    try {
+      int parsedDepth = Integer.parseInt(depth);
+      if (parsedDepth > 0) {
+        return parsedDepth;
+      }
+    } catch (NumberFormatException exception) {
+      // The same exception is thrown below.
+    }
+
+    throw new IllegalArgumentException("Depth must be a positive integer, got: " + depth + ".");
+  }
+
+  /**
+   * Checks that the given {@code source} is a pattern with a single trailing wildcard
+   * and that it is used as a source of `deps` or `rdeps` query.
    *
-   * <p>If no nodes with a similar name are found, returns an empty {@link List<String>}.
-   * Otherwise, it returns a {@link List<String>} with nodes with the same distance.
+   * @throws IllegalArgumentException if the pattern is invalid or is not supported by this query
    */
-  private List<String> findNodesWithClosestName(String originalNode, Set<String> allNodes) {
-    List<String> closestNodes = new ArrayList<>();
+  private void checkPattern(String source) {
+    if (!name.equals(DEPS_QUERY_NAME) && !name.equals(RDEPS_QUERY_NAME)) {
+      throw new IllegalArgumentException("Patterns are supported only by `deps` and `rdeps` queries.");
+    } else if (source.indexOf(WILDCARD) != source.length() - WILDCARD.length()) {
+      throw new IllegalArgumentException("A pattern may contain only a single wildcard at the end, got: " + source + ".");
+    }
+  }
 
-    for (String node: allNodes) {
-      int distance = calculateDistance(originalNode, node);
-      if (distance <= MAX_NUMBER_OF_MISPLACED_LETTERS) {
-        closestNodes.add(node);
-      }
+  /**
+   * Returns ids of all nodes which match the given {@code pattern}.
+   *
+   * @throws IllegalArgumentException if no nodes match the pattern
+   */
+  private static int[] findNodesMatchingPattern(String pattern, Graph bindingGraph) {
+    String prefix = pattern.substring(0, pattern.length() - WILDCARD.length());
+    int[] nodeIds = bindingGraph.getNodeIdsWithPrefix(prefix);
+    if (nodeIds.length == 0) {
+      throw new IllegalArgumentException("There are no nodes matching " + pattern + ".");
     }
 
-    return closestNodes;
+    return nodeIds;
   }
 
   /**
-   * Measures the difference between two strings using a
-   * <a href = "https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance algorithm</a>.
+   * Constructs the string representation of a path which consists of the first {@code length} elements
+   * of {@code nodeIds}, with node names taken from the given {@link Graph}.
    *
-   * @return the number of changes required to get one string from another,
-   * where each change is a single character modification (substitution, deletion or insertion)
+   * <p>Uses delimiter '->' between nodes.
+   */
+  private static String makePathString(int[] nodeIds, int length, Graph bindingGraph) {
+    StringJoiner joiner = new StringJoiner(" -> ");
+    for (int index = 0; index < length; index++) {
+      joiner.add(bindingGraph.getNodeName(nodeIds[index]));
+    }
+    return joiner.toString();
+  }
+
+  /**
+   * Returns the name of this query in lower case.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the name of the source node, which is always the first parameter of a query.
    */
-  private int calculateDistance(String firstString, String secondString) {
-    int firstLength = firstString.length();
-    int secondLength = secondString.length();
+  public String getSource() {
+    return parameters[0];
+  }
 
-    int[][] distances = new int[firstLength + 1][secondLength + 1];
+  /**
+   * Returns {@code true} if the source of this query is a pattern which may match several nodes.
+   */
+  public boolean hasSourcePattern() {
+    return isPattern(parameters[0]);
+  }
 
-    for (int index = 0; index <= firstLength; index++) {
-      distances[index][0] = index;
+  /**
+   * Returns {@code true} if the given source contains a wildcard. A source which is accepted by the constructor
+   * contains it only at the end.
+   */
+  private static boolean isPattern(String source) {
+    return source.contains(WILDCARD);
+  }
+
+  /**
+   * Returns the normalized form of this query: its name in lower case followed by its parameters,
+   * separated with spaces.
+   *
+   * <p>Node names may contain spaces, so different queries may have equal normalized forms. Use {@code getKey()}
+   * to identify results of a query.
+   */
+  @Override
+  public String toString() {
+    StringJoiner joiner = new StringJoiner(" ");
+    joiner.add(name);
+    for (String parameter: parameters) {
+      joiner.add(parameter);
     }
+    return joiner.toString();
+  }
 
-    for (int index = 0; index <= secondLength; index++) {
-      distances[0][index] = index;
+  /**
+   * Returns a key of this query: its name in lower case followed by its parameters, each of them is prefixed
+   * with its length. So keys of different queries are different even if parameters contain spaces.
+   *
+   * <p>Queries with equal keys always have equal results.
+   */
+  public String getKey() {
+    StringBuilder key = new StringBuilder(name);
+    for (String parameter: parameters) {
+      key.append(' ').append(parameter.length()).append(':').append(parameter);
     }
+    return key.toString();
+  }
 
-    for (int firstIndex = 0; firstIndex < firstLength; firstIndex++) {
-      for (int secondIndex = 0; secondIndex < secondLength; secondIndex++) {
-        if (firstString.charAt(firstIndex) == secondString.charAt(secondIndex)) {
-          distances[firstIndex + 1][secondIndex + 1] = distances[firstIndex][secondIndex];
-        } else {
-          int replaceCost = distances[firstIndex][secondIndex] + 1;
-          int insertCost = distances[firstIndex][secondIndex + 1] + 1;
-          int deleteCost = distances[firstIndex + 1][secondIndex] + 1;
-
-          distances[firstIndex + 1][secondIndex + 1] =
-              Collections.min(Arrays.asList(replaceCost, insertCost, deleteCost));
-        }
-      }
+  /**
+   * Returns the given {@code results} if they are not empty.
+   *
+   * @throws NoSuchElementException if the list with results is empty
+   */
+  private ImmutableList<String> checkResultsAreNotEmpty(ImmutableList<String> results) {
+    if (results.isEmpty()) {
+      throw new NoSuchElementException("Nothing found, list with results is empty.");
     }
 
-    return distances[firstLength][secondLength];
+    return results;
+  }
+
+  /**
+   * Checks if the passed {@code node} is in the {@link Graph} or if the user misspelled the node's name.
+   *
+   * <p>If the passed node is correct, returns its id.
+   * Otherwise, it throws an exception, the type of which depends on the node's name.
+   *
+   * @throws MisspelledNodeNameException if specified source node contains a typo
+   * and can be corrected in no more than {@link NodeNameMatcher#MAX_NUMBER_OF_MISPLACED_LETTERS} steps
+   *
+   * @throws IllegalArgumentException if specified source node doesn't exist
+   */
+  private int checkNodeForCorrectness(String node, Graph bindingGraph) {
+    int nodeId = bindingGraph.getNodeId(node);
+    if (nodeId >= 0) {
+      return nodeId;
+    }
+
+    // The specified node could not be found on the graph, we need to check for typos.
+    throw bindingGraph.getNodeNameMatcher().makeNodeNotFoundException(node);
   }
 }
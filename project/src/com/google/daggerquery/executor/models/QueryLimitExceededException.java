@@ -0,0 +1,30 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+/**
+ * An exception is thrown to indicate that a query was stopped before it found all results,
+ * because it found too many of them or ran for too long.
+ *
+ * <p>Results found so far are incomplete, so they <b>should not</b> be returned to the user.
+ */
+public class QueryLimitExceededException extends IllegalArgumentException {
+
+  public QueryLimitExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,292 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.UnsignedBytes;
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable table of node names, which maps each name to a dense integer id and back.
+ *
+ * <p>Names are sorted in lexicographical order and ids are their positions, so sorting ids also sorts names.
+ *
+ * <p>Names of one graph usually share long package prefixes, so they are stored as UTF-8 bytes with
+ * <a href="https://en.wikipedia.org/wiki/Incremental_encoding">front coding</a>. Names are split into
+ * blocks of {@code BLOCK_SIZE} names. The first name of a block is stored in full, each next name is stored
+ * as the length of the prefix it shares with the previous name and the remaining suffix.
+ * So decoding a name requires decoding at most {@code BLOCK_SIZE} entries of its block.
+ *
+ * <p>A table is never modified after creation, so it can be used from several threads.
+ */
+public final class SymbolTable {
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final int size;
+  private final int maxNameLength;
+
+  // Block heads are compared as UTF-8 bytes, which is possible only if names are sorted as bytes too.
+  // It's true unless names mix supplementary characters and characters above U+E000 at the same position.
+  private final boolean isSortedAsBytes;
+
+  // Encoded names and offsets of blocks inside them, all lengths are written as varints.
+  private final byte[] names;
+  private final int[] blockOffsets;
+
+  /**
+   * Creates a table from the given names, which must be distinct and sorted in lexicographical order.
+   */
+  public SymbolTable(Collection<String> sortedNames) {
+    size = sortedNames.size();
+    blockOffsets = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+
+    ByteArrayOutputStream encodedNames = new ByteArrayOutputStream();
+    String previousName = null;
+    byte[] previousBytes = new byte[0];
+    int longestName = 0;
+    boolean sortedAsBytes = true;
+    int id = 0;
+    for (String name: sortedNames) {
+      checkArgument(previousName == null || previousName.compareTo(name) < 0,
+          "Names must be distinct and sorted, but %s goes after %s.", name, previousName);
+
+      byte[] bytes = name.getBytes(UTF_8);
+      if (previousName != null && UnsignedBytes.lexicographicalComparator().compare(previousBytes, bytes) > 0) {
+        sortedAsBytes = false;
+      }
+
+      int sharedPrefix = 0;
+      if (id % BLOCK_SIZE == 0) {
+        blockOffsets[id / BLOCK_SIZE] = encodedNames.size();
+      } else {
+        while (sharedPrefix < Math.min(previousBytes.length, bytes.length)
+            && previousBytes[sharedPrefix] == bytes[sharedPrefix]) {
+          sharedPrefix++;
+        }
+        writeVarint(encodedNames, sharedPrefix);
+      }
+
+      writeVarint(encodedNames, bytes.length - sharedPrefix);
+      encodedNames.write(bytes, sharedPrefix, bytes.length - sharedPrefix);
+
+      longestName = Math.max(longestName, bytes.length);
+      previousName = name;
+      previousBytes = bytes;
+      id++;
+    }
+
+    names = encodedNames.toByteArray();
+    maxNameLength = longestName;
+    isSortedAsBytes = sortedAsBytes;
+  }
+
+  /**
+   * Returns the number of names in the table.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns a name with the given id.
+   */
+  public String getName(int id) {
+    Cursor cursor = new Cursor(id / BLOCK_SIZE);
+    for (int index = 0; index <= id % BLOCK_SIZE; index++) {
+      cursor.next();
+    }
+
+    return cursor.getName();
+  }
+
+  /**
+   * Returns an id of the given name or {@code -1} if there is no such name.
+   *
+   * <p>Encoded names are compared with the given one in place, so nothing is decoded.
+   */
+  public int getId(String name) {
+    byte[] nameBytes = name.getBytes(UTF_8);
+
+    // Looks for the last block which starts with a name that is not greater than the given one.
+    int low = 0;
+    int high = blockOffsets.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = isSortedAsBytes
+          ? compareWithBlockHead(middle, nameBytes)
+          : getName(middle * BLOCK_SIZE).compareTo(name);
+
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle * BLOCK_SIZE;
+      }
+    }
+
+    return high < 0 ? -1 : findInBlock(high, nameBytes);
+  }
+
+  /**
+   * Returns all names in lexicographical order.
+   *
+   * <p>Names are decoded on each call and are not cached.
+   */
+  public ImmutableSet<String> getAllNames() {
+    ImmutableSet.Builder<String> allNames = ImmutableSet.builderWithExpectedSize(size);
+    for (int block = 0; block < blockOffsets.length; block++) {
+      Cursor cursor = new Cursor(block);
+      int blockEnd = Math.min(size, (block + 1) * BLOCK_SIZE);
+      for (int id = block * BLOCK_SIZE; id < blockEnd; id++) {
+        cursor.next();
+        allNames.add(cursor.getName());
+      }
+    }
+
+    return allNames.build();
+  }
+
+  /**
+   * Compares the first name of the given {@code block} with the given name as unsigned bytes.
+   */
+  private int compareWithBlockHead(int block, byte[] nameBytes) {
+    int position = blockOffsets[block];
+    int length = readVarint(position);
+    position += getVarintSize(length);
+
+    for (int index = 0; index < Math.min(length, nameBytes.length); index++) {
+      int comparison = UnsignedBytes.compare(names[position + index], nameBytes[index]);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(length, nameBytes.length);
+  }
+
+  /**
+   * Returns an id of the given name inside the given {@code block} or {@code -1} if there is no such name.
+   *
+   * <p>Names of a block are not rebuilt. Each name shares a prefix with the previous one, so it is enough
+   * to know how many leading bytes of the previous name match the given name and to compare only the suffix.
+   */
+  private int findInBlock(int block, byte[] nameBytes) {
+    int position = blockOffsets[block];
+    int blockEnd = Math.min(size, (block + 1) * BLOCK_SIZE);
+
+    // The length of the common prefix of the previous name and the given name.
+    int matchedLength = 0;
+    for (int id = block * BLOCK_SIZE; id < blockEnd; id++) {
+      int sharedPrefix = 0;
+      if (id != block * BLOCK_SIZE) {
+        sharedPrefix = readVarint(position);
+        position += getVarintSize(sharedPrefix);
+      }
+      int suffixLength = readVarint(position);
+      position += getVarintSize(suffixLength);
+
+      if (sharedPrefix < matchedLength) {
+        // The name differs from the previous one, and so from the given one, right after the shared prefix.
+        matchedLength = sharedPrefix;
+      } else if (sharedPrefix == matchedLength) {
+        int index = 0;
+        while (index < suffixLength && matchedLength < nameBytes.length
+            && names[position + index] == nameBytes[matchedLength]) {
+          index++;
+          matchedLength++;
+        }
+        if (index == suffixLength && matchedLength == nameBytes.length) {
+          return id;
+        }
+      }
+      // Otherwise the name continues the previous one after its mismatch, so the common prefix doesn't change.
+
+      position += suffixLength;
+    }
+
+    return -1;
+  }
+
+  private int readVarint(int position) {
+    int value = 0;
+    int shift = 0;
+    byte nextByte;
+    do {
+      nextByte = names[position++];
+      value |= (nextByte & 0x7F) << shift;
+      shift += 7;
+    } while ((nextByte & 0x80) != 0);
+
+    return value;
+  }
+
+  private static int getVarintSize(int value) {
+    int varintSize = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      varintSize++;
+    }
+    return varintSize;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream output, int value) {
+    while ((value & ~0x7F) != 0) {
+      output.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output.write(value);
+  }
+
+  /**
+   * Decodes names of a single block one by one, each name is built from the previous one in place.
+   */
+  private class Cursor {
+    private final byte[] name = new byte[maxNameLength];
+    private int length = 0;
+    private int position;
+    private boolean isFirst = true;
+
+    Cursor(int block) {
+      position = blockOffsets[block];
+    }
+
+    void next() {
+      int sharedPrefix = isFirst ? 0 : readVarint();
+      int suffixLength = readVarint();
+
+      System.arraycopy(names, position, name, sharedPrefix, suffixLength);
+      position += suffixLength;
+      length = sharedPrefix + suffixLength;
+      isFirst = false;
+    }
+
+    String getName() {
+      return new String(name, 0, length, UTF_8);
+    }
+
+    private int readVarint() {
+      int value = SymbolTable.this.readVarint(position);
+      position += getVarintSize(value);
+      return value;
+    }
+  }
+}
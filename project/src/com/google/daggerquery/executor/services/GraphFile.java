@@ -0,0 +1,119 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import com.google.common.collect.ImmutableList;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.executor.models.MappedGraph;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class which writes and opens binary files with all binding graphs of an app.
+ *
+ * <p>A file starts with a header, all numbers are 4-byte integers:
+ *
+ * <pre>
+ * magic, version, graphCount
+ * graphOffsets[graphCount + 1]   the graph with index {@code i} is located between offsets {@code i} and {@code i + 1}
+ * </pre>
+ *
+ * <p>Each graph is stored in a format described in {@link MappedGraph}. Since a file is opened
+ * via {@link FileChannel#map}, its size can't exceed 2 GB.
+ */
+public class GraphFile {
+  private static final int MAGIC = 0x44514746;
+  private static final int VERSION = 1;
+
+  /**
+   * Writes the given {@code graphs} into a {@code file}.
+   *
+   * @throws IOException if an I/O error occurred while writing a file
+   */
+  public static void write(List<? extends Graph> graphs, Path file) throws IOException {
+    List<byte[]> serializedGraphs = new ArrayList<>();
+    for (Graph graph: graphs) {
+      serializedGraphs.add(MappedGraph.write(graph));
+    }
+
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(graphs.size());
+
+      long offset = (3 + graphs.size() + 1) * Integer.BYTES;
+      output.writeInt((int) offset);
+      for (byte[] serializedGraph: serializedGraphs) {
+        offset += serializedGraph.length;
+        if (offset > Integer.MAX_VALUE) {
+          throw new IOException("Binding graphs are too large to be saved in a single file.");
+        }
+        output.writeInt((int) offset);
+      }
+
+      for (byte[] serializedGraph: serializedGraphs) {
+        output.write(serializedGraph);
+      }
+    }
+  }
+
+  /**
+   * Maps the given {@code file} into memory and returns all graphs saved in it.
+   *
+   * <p>Returned graphs read data directly from the mapped file, so nothing is parsed or copied to the heap.
+   *
+   * @throws IOException if a file cannot be read or it isn't a file with binding graphs
+   */
+  public static ImmutableList<Graph> map(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException(String.format("File %s is too large to be mapped.", file));
+      }
+
+      // The mapping stays valid after the channel is closed.
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.capacity() < 3 * Integer.BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IOException(String.format("File %s doesn't contain binding graphs.", file));
+    }
+
+    int graphCount = buffer.getInt(2 * Integer.BYTES);
+    ImmutableList.Builder<Graph> graphs = new ImmutableList.Builder<>();
+    for (int index = 0; index < graphCount; index++) {
+      int graphStart = buffer.getInt((3 + index) * Integer.BYTES);
+      int graphEnd = buffer.getInt((3 + index + 1) * Integer.BYTES);
+
+      ByteBuffer graphBuffer = buffer.duplicate();
+      graphBuffer.position(graphStart);
+      graphBuffer.limit(graphEnd);
+      graphs.add(new MappedGraph(graphBuffer.slice()));
+    }
+
+    return graphs.build();
+  }
+}
@@ -0,0 +1,46 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import com.google.daggerquery.executor.models.CompactGraph;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A build-time tool which converts a .zip file with serialized binding graphs into a {@link GraphFile}.
+ */
+public class GraphFileCompiler {
+  /**
+   * An entry point which expects a path to .zip file with binding graphs and a path to the output file.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Expected paths to .zip file with binding graphs and to the output file.");
+    }
+
+    List<CompactGraph> graphs = new ArrayList<>();
+    for (BindingGraph bindingGraph: new SourcesLoader().loadBindingGraphs(new File(args[0]))) {
+      graphs.add(new CompactGraph(bindingGraph));
+    }
+
+    GraphFile.write(graphs, Paths.get(args[1]));
+  }
+}
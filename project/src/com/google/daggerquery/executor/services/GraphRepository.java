@@ -0,0 +1,201 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.daggerquery.executor.models.CompactGraph;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.executor.models.MergedGraph;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A long-lived and thread-safe storage of all binding graphs presented in the app.
+ *
+ * <p>Binding graphs are read with {@link SourcesLoader} and converted into {@link Graph} instances only once,
+ * after that all queries are executed on the same prebuilt graphs.
+ *
+ * <p>If a path to a {@link GraphFile} is specified with the {@code daggerquery.graph_file} system property,
+ * graphs are memory-mapped from this file instead, so nothing is parsed at startup.
+ *
+ * <p>If the {@code daggerquery.merge_graphs} system property is {@code true}, graphs of all root components are merged
+ * into a single {@link MergedGraph}, so each query is executed once and shared nodes are stored once.
+ *
+ * <p>If loading fails, nothing is remembered and the next call of {@code getGraphs()} tries to load graphs again.
+ */
+public class GraphRepository {
+  public static final String GRAPH_FILE_PROPERTY = "daggerquery.graph_file";
+  public static final String MERGE_GRAPHS_PROPERTY = "daggerquery.merge_graphs";
+
+  private final SourcesLoader sourcesLoader;
+  private final Path graphFile;
+  private final boolean mergeGraphs;
+
+  // Each loaded set of graphs gets its own id, so results computed for different graphs are never mixed up.
+  private static final AtomicLong nextSnapshotId = new AtomicLong();
+
+  private volatile ImmutableList<Graph> graphs;
+  private volatile long snapshotId;
+  private volatile NodeLookup nodeLookup;
+  private volatile String snapshotHash;
+
+  public GraphRepository() {
+    this(new SourcesLoader(/*parallelism =*/ Runtime.getRuntime().availableProcessors()),
+        System.getProperty(GRAPH_FILE_PROPERTY) == null ? null : Paths.get(System.getProperty(GRAPH_FILE_PROPERTY)),
+        Boolean.getBoolean(MERGE_GRAPHS_PROPERTY));
+  }
+
+  public GraphRepository(SourcesLoader sourcesLoader) {
+    this(sourcesLoader, /*graphFile =*/ null);
+  }
+
+  /**
+   * Creates a repository which maps graphs from the given {@code graphFile} if it is not {@code null},
+   * otherwise it loads graphs with the given {@code sourcesLoader}.
+   */
+  public GraphRepository(SourcesLoader sourcesLoader, Path graphFile) {
+    this(sourcesLoader, graphFile, /*mergeGraphs =*/ false);
+  }
+
+  /**
+   * Creates a repository like {@link #GraphRepository(SourcesLoader, Path)} does.
+   *
+   * <p>If {@code mergeGraphs} is {@code true}, {@code getGraphs()} returns a single {@link MergedGraph}
+   * built from all loaded graphs.
+   */
+  public GraphRepository(SourcesLoader sourcesLoader, Path graphFile, boolean mergeGraphs) {
+    this.sourcesLoader = sourcesLoader;
+    this.graphFile = graphFile;
+    this.mergeGraphs = mergeGraphs;
+  }
+
+  /**
+   * Returns all graphs presented in the app, loads them if it wasn't done before.
+   *
+   * @throws FileNotFoundException if .zip file with binding graphs cannot be found
+   * @throws IOException if an I/O error occurred while loading binding graphs
+   */
+  public ImmutableList<Graph> getGraphs() throws IOException {
+    ImmutableList<Graph> loadedGraphs = graphs;
+    if (loadedGraphs != null) {
+      return loadedGraphs;
+    }
+
+    synchronized (this) {
+      if (graphs == null) {
+        ImmutableList<Graph> newGraphs = loadGraphs();
+        snapshotId = nextSnapshotId.incrementAndGet();
+        graphs = newGraphs;
+      }
+      return graphs;
+    }
+  }
+
+  /**
+   * Returns an id of the graphs returned by {@code getGraphs()}, loads them if it wasn't done before.
+   *
+   * <p>Ids are unique among all repositories in the app, so they can be used to identify cached results.
+   *
+   * @throws IOException if an I/O error occurred while loading binding graphs
+   */
+  public long getSnapshotId() throws IOException {
+    getGraphs();
+    return snapshotId;
+  }
+
+  /**
+   * Returns a hash of the contents of the graphs returned by {@code getGraphs()}, loads them if it wasn't done before.
+   *
+   * <p>Unlike a snapshot id, the hash doesn't change when the app is restarted with the same graphs,
+   * so it can be used to identify results outside of the app, for example in HTTP caches.
+   *
+   * @throws IOException if an I/O error occurred while loading binding graphs
+   */
+  public String getSnapshotHash() throws IOException {
+    String computedSnapshotHash = snapshotHash;
+    if (computedSnapshotHash != null) {
+      return computedSnapshotHash;
+    }
+
+    ImmutableList<Graph> loadedGraphs = getGraphs();
+    synchronized (this) {
+      if (snapshotHash == null) {
+        snapshotHash = calculateHash(loadedGraphs);
+      }
+      return snapshotHash;
+    }
+  }
+
+  /**
+   * Returns a {@link NodeLookup} over all graphs presented in the app.
+   *
+   * <p>The lookup doesn't copy node names, it looks them up in the graphs themselves. Only its matcher of
+   * misspelled names decodes all names, and it is built when a node is not found for the first time.
+   *
+   * @throws IOException if an I/O error occurred while loading binding graphs
+   */
+  public NodeLookup getNodeLookup() throws IOException {
+    NodeLookup builtNodeLookup = nodeLookup;
+    if (builtNodeLookup != null) {
+      return builtNodeLookup;
+    }
+
+    ImmutableList<Graph> loadedGraphs = getGraphs();
+    synchronized (this) {
+      if (nodeLookup == null) {
+        nodeLookup = new NodeLookup(loadedGraphs);
+      }
+      return nodeLookup;
+    }
+  }
+
+  private ImmutableList<Graph> loadGraphs() throws IOException {
+    ImmutableList<Graph> loadedGraphs = graphFile != null
+        ? GraphFile.map(graphFile)
+        : ImmutableList.copyOf(sourcesLoader.loadGraphs(CompactGraph::new));
+
+    if (mergeGraphs && loadedGraphs.size() > 1) {
+      return ImmutableList.of(new MergedGraph(loadedGraphs));
+    }
+
+    return loadedGraphs;
+  }
+
+  private static String calculateHash(ImmutableList<Graph> graphs) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putInt(graphs.size());
+    for (Graph graph: graphs) {
+      hasher.putInt(graph.getNodeCount());
+      for (int nodeId = 0; nodeId < graph.getNodeCount(); nodeId++) {
+        hasher.putString(graph.getNodeName(nodeId), UTF_8);
+        hasher.putInt(graph.getDependencyCount(nodeId));
+        for (int index = 0; index < graph.getDependencyCount(nodeId); index++) {
+          hasher.putInt(graph.getDependency(nodeId, index));
+        }
+      }
+    }
+
+    return hasher.hash().toString();
+  }
+}
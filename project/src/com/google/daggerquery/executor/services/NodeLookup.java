@@ -0,0 +1,83 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.executor.models.NodeNameMatcher;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Looks up node names across all binding graphs of an app.
+ *
+ * <p>Finds graphs which contain a node with the given name, so a query can be executed only on graphs
+ * where its source node exists. It is not an index: each graph is asked for the id of the node, which is
+ * a binary search over its sorted names, so a lookup takes {@code O(graphs * log(nodes))} comparisons.
+ * In exchange nothing is built at load time and names are not copied. Graphs compare names in place,
+ * so names of memory-mapped graphs are not decoded either.
+ *
+ * <p>Also provides a single {@link NodeNameMatcher} over names of all graphs, which is used
+ * when a node doesn't exist in any graph. It is built only when it is needed for the first time.
+ */
+public class NodeLookup {
+  private final ImmutableList<Graph> graphs;
+  private final Supplier<NodeNameMatcher> nodeNameMatcher;
+
+  public NodeLookup(List<? extends Graph> graphs) {
+    this.graphs = ImmutableList.copyOf(graphs);
+    this.nodeNameMatcher = Suppliers.memoize(() -> new NodeNameMatcher(collectNodeNames(this.graphs)));
+  }
+
+  /**
+   * Returns sorted indexes of graphs which contain the given {@code node}.
+   *
+   * <p>Returns an empty array if there is no such node in any graph.
+   */
+  public int[] getGraphsContainingNode(String node) {
+    int[] graphIndexes = new int[graphs.size()];
+    int graphCount = 0;
+    for (int graphIndex = 0; graphIndex < graphs.size(); graphIndex++) {
+      if (graphs.get(graphIndex).getNodeId(node) >= 0) {
+        graphIndexes[graphCount++] = graphIndex;
+      }
+    }
+
+    return Arrays.copyOf(graphIndexes, graphCount);
+  }
+
+  /**
+   * Returns a {@link NodeNameMatcher} over node names of all graphs, it is created on the first call.
+   */
+  public NodeNameMatcher getNodeNameMatcher() {
+    return nodeNameMatcher.get();
+  }
+
+  private static ImmutableSet<String> collectNodeNames(List<Graph> graphs) {
+    ImmutableSet.Builder<String> nodeNames = ImmutableSet.builder();
+    for (Graph graph: graphs) {
+      for (int nodeId = 0; nodeId < graph.getNodeCount(); nodeId++) {
+        nodeNames.add(graph.getNodeName(nodeId));
+      }
+    }
+
+    return nodeNames.build();
+  }
+}
@@ -16,6 +16,8 @@ limitations under the License.
 
 package com.google.daggerquery.executor.services;
 
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -23,19 +25,76 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 /**
  * A class which loads a binding graph saved with Dagger SPI plugin.
+ *
+ * <p>When it is created with {@code parallelism} greater than one, graphs are loaded in a parallel mode:
+ * files are read directly from the resource stream and are parsed concurrently on a pool with
+ * {@code parallelism} threads.
  */
 public class SourcesLoader {
   private static final String PATH_TO_BINDING_GRAPHS = "/com/google/daggerquery/binding_graph_data.zip";
   private static final String BINDING_GRAPHS_SOURCES = "binding_graphs.tmp";
 
+  private final int parallelism;
+
+  public SourcesLoader() {
+    this(/*parallelism =*/ 1);
+  }
+
+  public SourcesLoader(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("The number of threads must be positive, got: " + parallelism + ".");
+    }
+
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Loads all binding graphs and converts each of them with the given {@code converter}.
+   *
+   * <p>In a parallel mode both parsing and conversion of graphs are done concurrently.
+   * The order of returned graphs matches the order of files in .zip file in both modes.
+   *
+   * @throws FileNotFoundException if an app with the connected plugin wasn't launched and .zip file cannot be found
+   * @throws IOException if an I/O error occurred while extracting files from .zip file
+   */
+  public <T> List<T> loadGraphs(Function<BindingGraph, T> converter) throws IOException {
+    if (parallelism == 1) {
+      List<T> graphs = new ArrayList<>();
+      for (BindingGraph bindingGraph: loadBindingGraphs()) {
+        graphs.add(converter.apply(bindingGraph));
+      }
+      return graphs;
+    }
+
+    try (InputStream zipInputStream = SourcesLoader.class.getResourceAsStream(PATH_TO_BINDING_GRAPHS)) {
+      if (zipInputStream == null) {
+        throw new FileNotFoundException(String.format("File %s is missing.", PATH_TO_BINDING_GRAPHS));
+      }
+
+      ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+      try {
+        return loadGraphsInParallel(new ZipInputStream(zipInputStream), converter, executorService);
+      } finally {
+        executorService.shutdownNow();
+      }
+    }
+  }
+
   /**
    * Reads .zip resource file which contains several .textproto files with serialized binding graphs.
    *
@@ -51,31 +110,102 @@ public class SourcesLoader {
       }
 
       File fileWithSources = makeFileFromInputStream(zipInputStream);
-      try (ZipFile zipFile = new ZipFile(fileWithSources)) {
-        Enumeration<? extends ZipEntry> filesWithBindingGraphs = zipFile.entries();
-
-        List<BindingGraph> bindingGraphs = new ArrayList<>();
-        while (filesWithBindingGraphs.hasMoreElements()) {
-          ZipEntry bindingGraphEntry = filesWithBindingGraphs.nextElement();
-
-          try {
-            try (InputStream inputStream = zipFile.getInputStream(bindingGraphEntry)) {
-              bindingGraphs.add(BindingGraph.parseFrom(inputStream));
-            }
-          } catch (InvalidProtocolBufferException e) {
-            // This might happened because non-proto files were in .zip.
-            // However, we still can parse other files with serialized binding graphs and ignore this exception.
+      try {
+        return loadBindingGraphs(fileWithSources);
+      } finally {
+        fileWithSources.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads the given .zip file which contains several .textproto files with serialized binding graphs.
+   *
+   * <p>Returns a list with {@link BindingGraph} instances. Parses them from files located in .zip file.
+   *
+   * @throws FileNotFoundException if .zip file doesn't contain any serialized binding graph
+   * @throws IOException if an I/O error occurred while extracting files from .zip file
+   */
+  public List<BindingGraph> loadBindingGraphs(File zipFileWithSources) throws IOException {
+    try (ZipFile zipFile = new ZipFile(zipFileWithSources)) {
+      Enumeration<? extends ZipEntry> filesWithBindingGraphs = zipFile.entries();
+
+      List<BindingGraph> bindingGraphs = new ArrayList<>();
+      while (filesWithBindingGraphs.hasMoreElements()) {
+        ZipEntry bindingGraphEntry = filesWithBindingGraphs.nextElement();
+
+        try {
+          try (InputStream inputStream = zipFile.getInputStream(bindingGraphEntry)) {
+            bindingGraphs.add(BindingGraph.parseFrom(inputStream));
           }
+        } catch (InvalidProtocolBufferException e) {
+          // This might happened because non-proto files were in .zip.
+          // However, we still can parse other files with serialized binding graphs and ignore this exception.
         }
+      }
+
+      if (bindingGraphs.isEmpty()) {
+        throw new FileNotFoundException("The .zip does not contain .textproto files with serialized binding graphs.");
+      }
 
-        if (bindingGraphs.isEmpty()) {
-          throw new FileNotFoundException("The .zip does not contain .textproto files with serialized binding graphs.");
+      return bindingGraphs;
+    }
+  }
+
+  /**
+   * Reads files from the given {@link ZipInputStream} one by one and submits parsing and conversion of each file
+   * to the {@code executorService}, so graphs are processed while the next files are being read.
+   */
+  private <T> List<T> loadGraphsInParallel(ZipInputStream zipInputStream, Function<BindingGraph, T> converter,
+                                           ExecutorService executorService) throws IOException {
+    List<Future<T>> futureGraphs = new ArrayList<>();
+
+    ZipEntry bindingGraphEntry;
+    while ((bindingGraphEntry = zipInputStream.getNextEntry()) != null) {
+      if (bindingGraphEntry.isDirectory()) {
+        continue;
+      }
+
+      byte[] serializedBindingGraph = ByteStreams.toByteArray(zipInputStream);
+      futureGraphs.add(executorService.submit(() -> {
+        try {
+          return converter.apply(BindingGraph.parseFrom(serializedBindingGraph));
+        } catch (InvalidProtocolBufferException e) {
+          // Non-proto files are ignored in the same way as in a sequential mode.
+          return null;
         }
+      }));
+    }
 
-        fileWithSources.delete();
-        return bindingGraphs;
+    List<T> graphs = new ArrayList<>();
+    for (Future<T> futureGraph: futureGraphs) {
+      T graph = getLoadedGraph(futureGraph);
+      if (graph != null) {
+        graphs.add(graph);
       }
     }
+
+    if (graphs.isEmpty()) {
+      throw new FileNotFoundException("The .zip does not contain .textproto files with serialized binding graphs.");
+    }
+
+    return graphs;
+  }
+
+  /**
+   * Waits for the given {@code futureGraph} and rethrows an exception which happened while it was loaded.
+   */
+  private <T> T getLoadedGraph(Future<T> futureGraph) throws IOException {
+    try {
+      return futureGraph.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Loading of binding graphs was interrupted.");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
   }
 
   /**
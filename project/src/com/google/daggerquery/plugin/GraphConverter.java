@@ -22,8 +22,11 @@ import com.google.daggerquery.protobuf.autogen.BindingGraphProto.BindingGraph.Li
 import com.google.daggerquery.protobuf.autogen.DependencyProto.Dependency;
 import dagger.model.Binding;
 import dagger.model.BindingGraph;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -67,35 +70,59 @@ public class GraphConverter<NodeT, EdgeT> {
     return bindingGraph;
   }
 
+  /**
+   * A node whose successors are being processed by {@code makeAdjacencyList()}.
+   */
+  private class DepthFirstSearchFrame {
+    private final String nodeKey;
+    private final Iterator<NodeT> childNodes;
+    private final ListWithDependencies.Builder listWithDependenciesBuilder = ListWithDependencies.newBuilder();
+
+    DepthFirstSearchFrame(NodeT node, Network<NodeT, EdgeT> network) {
+      this.nodeKey = makeStringFromNode(node);
+      this.childNodes = network.successors(node).iterator();
+    }
+  }
+
   /**
    * Implementation of depth first search algorithm that traverses a given network.
    *
    * Populates given {@code adjacencyList} with values taken from provided {@code network}.
-   * Starts traversing a graph from {@code currentNode}.
+   * Starts traversing a graph from {@code rootNode}.
    * Fills {@code visitedNodes} with processed nodes, after execution
    * this set contains all nodes in current connected component.
    *
    * <p>For each node, all its child nodes are saved to {@code adjacencyList}.
    *
-   * @param currentNode is a node which will be processed at this step
+   * <p>Uses an explicit stack instead of recursion, so long chains of bindings don't overflow the thread's stack.
+   * Nodes are visited in the same order as a recursive implementation would visit them.
+   *
+   * @param rootNode is a node from which the traversal starts
    * @param visitedNodes is a set that contains all processed nodes to avoid loops
    */
-  private void makeAdjacencyList(NodeT currentNode, Network<NodeT, EdgeT> network,
+  private void makeAdjacencyList(NodeT rootNode, Network<NodeT, EdgeT> network,
                                  Map<String, ListWithDependencies> adjacencyList, Set<String> visitedNodes) {
-    String nodeKey = makeStringFromNode(currentNode);
-    visitedNodes.add(nodeKey);
+    Deque<DepthFirstSearchFrame> stack = new ArrayDeque<>();
+    stack.push(new DepthFirstSearchFrame(rootNode, network));
+    visitedNodes.add(stack.peek().nodeKey);
+
+    while (!stack.isEmpty()) {
+      DepthFirstSearchFrame frame = stack.peek();
 
-    ListWithDependencies.Builder listWithDependenciesBuilder = ListWithDependencies.newBuilder();
-    for (NodeT childNode: network.successors(currentNode)) {
+      if (!frame.childNodes.hasNext()) {
+        adjacencyList.put(frame.nodeKey, frame.listWithDependenciesBuilder.build());
+        stack.pop();
+        continue;
+      }
+
+      NodeT childNode = frame.childNodes.next();
       String childNodeKey = makeStringFromNode(childNode);
-      listWithDependenciesBuilder.addDependency(Dependency.newBuilder().setTarget(childNodeKey).build());
+      frame.listWithDependenciesBuilder.addDependency(Dependency.newBuilder().setTarget(childNodeKey).build());
 
-      if (!visitedNodes.contains(childNodeKey)) {
-        makeAdjacencyList(childNode, network, adjacencyList, visitedNodes);
+      if (visitedNodes.add(childNodeKey)) {
+        stack.push(new DepthFirstSearchFrame(childNode, network));
       }
     }
-
-    adjacencyList.put(nodeKey, listWithDependenciesBuilder.build());
   }
 
   /**
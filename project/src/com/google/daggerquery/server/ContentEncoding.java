@@ -0,0 +1,127 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings which can be applied to a body of a response.
+ *
+ * <p>A coding is chosen by the <b>Accept-Encoding</b> header of a request, as described in
+ * <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4">RFC 7231</a>.
+ */
+enum ContentEncoding {
+  GZIP("gzip") {
+    @Override
+    OutputStream wrap(OutputStream outputStream) throws IOException {
+      return new GZIPOutputStream(outputStream, /*syncFlush =*/ true);
+    }
+  },
+  DEFLATE("deflate") {
+    @Override
+    OutputStream wrap(OutputStream outputStream) {
+      return new DeflaterOutputStream(outputStream, /*syncFlush =*/ true);
+    }
+  };
+
+  private final String name;
+
+  ContentEncoding(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of this coding, which is used in <b>Content-Encoding</b> header.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Returns a stream which encodes all data written to it and writes the result into the given {@code outputStream}.
+   *
+   * <p>Flushing the returned stream writes everything encoded so far to the given stream, so a client can decode
+   * a part of a body before the rest is written. Closing it finishes encoding and closes the given stream.
+   */
+  abstract OutputStream wrap(OutputStream outputStream) throws IOException;
+
+  /**
+   * Chooses a coding accepted by a client which sent the given <b>Accept-Encoding</b> header,
+   * gzip is preferred over deflate.
+   *
+   * <p>Returns {@code null} if the header is missing or neither of codings is accepted,
+   * in this case a body must be sent as is.
+   */
+  static ContentEncoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    Set<ContentEncoding> acceptedEncodings = EnumSet.noneOf(ContentEncoding.class);
+    Set<ContentEncoding> rejectedEncodings = EnumSet.noneOf(ContentEncoding.class);
+    boolean acceptsAnyEncoding = false;
+
+    for (String coding: acceptEncoding.split(",")) {
+      String[] codingParts = coding.split(";");
+      String codingName = codingParts[0].trim().toLowerCase(Locale.ROOT);
+      boolean isAccepted = !hasZeroQuality(codingParts);
+
+      if (codingName.equals("*")) {
+        acceptsAnyEncoding = isAccepted;
+        continue;
+      }
+
+      for (ContentEncoding encoding: values()) {
+        if (encoding.name.equals(codingName) && isAccepted) {
+          acceptedEncodings.add(encoding);
+        } else if (encoding.name.equals(codingName)) {
+          rejectedEncodings.add(encoding);
+        }
+      }
+    }
+
+    for (ContentEncoding encoding: values()) {
+      if (acceptedEncodings.contains(encoding) || (acceptsAnyEncoding && !rejectedEncodings.contains(encoding))) {
+        return encoding;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks if parameters of a coding contain a quality value equal to zero, which means "not acceptable".
+   */
+  private static boolean hasZeroQuality(String[] codingParts) {
+    for (int index = 1; index < codingParts.length; index++) {
+      String parameter = codingParts[index].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2)) == 0;
+        } catch (NumberFormatException e) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
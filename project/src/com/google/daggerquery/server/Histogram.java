@@ -0,0 +1,72 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed buckets which can be updated from many threads without locks.
+ *
+ * <p>Each bucket is a {@link LongAdder}, so concurrent updates don't contend on a single counter. Counts are read
+ * without a snapshot, which is fine for monitoring: a concurrent update may be seen only partially.
+ */
+final class Histogram {
+  private final double[] upperBounds;
+
+  // The last bucket counts values which are greater than all upper bounds.
+  private final LongAdder[] bucketCounts;
+  private final DoubleAdder sum = new DoubleAdder();
+
+  /**
+   * Creates a histogram with the given upper bounds of buckets, which must be sorted in increasing order.
+   */
+  Histogram(double... upperBounds) {
+    this.upperBounds = upperBounds.clone();
+    this.bucketCounts = new LongAdder[upperBounds.length + 1];
+    for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+      bucketCounts[bucket] = new LongAdder();
+    }
+  }
+
+  void observe(double value) {
+    int bucket = Arrays.binarySearch(upperBounds, value);
+    bucketCounts[bucket >= 0 ? bucket : -bucket - 1].increment();
+    sum.add(value);
+  }
+
+  /**
+   * Appends the histogram in the <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus
+   * text format</a> without HELP and TYPE lines, {@code labels} are added to each sample and may be empty.
+   */
+  void writeTo(StringBuilder output, String name, String labels) {
+    String labelsPrefix = labels.isEmpty() ? "" : labels + ",";
+
+    long cumulativeCount = 0;
+    for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+      cumulativeCount += bucketCounts[bucket].sum();
+      String upperBound = bucket < upperBounds.length ? Double.toString(upperBounds[bucket]) : "+Inf";
+      output.append(name).append("_bucket{").append(labelsPrefix).append("le=\"").append(upperBound).append("\"} ")
+          .append(cumulativeCount).append('\n');
+    }
+
+    String labelsSuffix = labels.isEmpty() ? "" : "{" + labels + "}";
+    output.append(name).append("_sum").append(labelsSuffix).append(' ').append(sum.sum()).append('\n');
+    output.append(name).append("_count").append(labelsSuffix).append(' ').append(cumulativeCount).append('\n');
+  }
+}
@@ -1,33 +1,152 @@
 package com.google.daggerquery.server;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.daggerquery.executor.QueryExecutor;
-import com.google.gson.Gson;
+import com.google.daggerquery.executor.services.GraphRepository;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
 import io.undertow.Undertow;
+import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
+import io.undertow.util.SameThreadExecutor;
 import io.undertow.util.StatusCodes;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class Server {
 
   public static final int PORT = 4921;
   public static final String HOST = "localhost";
   public static final String PATH = "/daggerquery/";
+  public static final String BATCH_PATH = PATH + "batch";
+  public static final String METRICS_PATH = "/metrics";
+
+  /**
+   * The maximum number of queries in a single batch request.
+   */
+  public static final int MAX_BATCH_SIZE = 1000;
+
+  /**
+   * The time limit of a single batch request. A batch occupies one query worker, so without the limit
+   * a single request could keep it busy for as long as a thousand separate requests.
+   */
+  public static final Duration BATCH_TIMEOUT = Duration.ofSeconds(30);
+
+  /**
+   * A system property with the number of threads which execute a query on different graphs concurrently,
+   * by default it's the number of available processors.
+   */
+  public static final String GRAPH_THREADS_PROPERTY = "daggerquery.graph_threads";
+
+  /**
+   * System properties with the number of threads which execute queries and the number of queries
+   * which may wait for a free thread. By default there is a thread per available processor.
+   */
+  public static final String QUERY_THREADS_PROPERTY = "daggerquery.query_threads";
+  public static final String QUERY_QUEUE_SIZE_PROPERTY = "daggerquery.query_queue_size";
+
+  private static final int DEFAULT_QUERY_QUEUE_SIZE = 64;
+
+  /**
+   * Results are written to a response in chunks of this number of results, so a client receives the first results
+   * while the rest are still being serialized.
+   */
+  private static final int RESULTS_PER_CHUNK = 256;
+  private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * Responses which are estimated to be shorter than this number of bytes are not compressed,
+   * since compression doesn't pay off for them.
+   */
+  private static final int MIN_COMPRESSED_RESPONSE_SIZE = 1024;
+
+  /**
+   * Results may be stored by browsers and proxies, but they must be revalidated with an ETag on each use,
+   * since graphs change when the app is rebuilt.
+   */
+  private static final String CACHE_CONTROL = "public, no-cache";
 
   private static Undertow undertowServer;
+  private static QueryExecutor queryExecutor;
+  private static ExecutorService queryWorkers;
+  private static final ServerMetrics metrics = new ServerMetrics();
 
   /**
-   * Starts a server that accepts a single <b>GET</b> request with the specified query.
+   * Starts a server that accepts a single <b>GET</b> request with the specified query
+   * and a <b>POST</b> request with a batch of queries.
+   *
+   * <p>Binding graphs are loaded before the server starts and are shared by all requests.
+   * If they cannot be loaded, the server still starts and reports the reason on each request.
+   *
+   * <p>Queries are executed on a bounded pool of worker threads, so IO threads are never blocked by a long query.
+   * When all workers are busy and the queue is full, a request is rejected with <b>503</b> status code.
+   *
+   * <p>Metrics of the server are available with a <b>GET</b> request to {@code METRICS_PATH}.
    */
   public static void main(String[] args) {
+    start(new GraphRepository());
+  }
+
+  /**
+   * Starts a server which executes queries on graphs from the given {@link GraphRepository}.
+   */
+  static void start(GraphRepository graphRepository) {
+    try {
+      long loadingStart = System.nanoTime();
+      graphRepository.getGraphs();
+      metrics.observeStage("load_graphs", loadingStart);
+
+      // The hash is needed for ETags of all results, so the first query doesn't pay for hashing all graphs.
+      long hashingStart = System.nanoTime();
+      graphRepository.getSnapshotHash();
+      metrics.observeStage("hash_graphs", hashingStart);
+    } catch (IOException e) {
+      System.err.println("File with binding graph sources not found. Reason: " + e.getMessage());
+    }
+
+    int graphThreads = Integer.getInteger(GRAPH_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    ExecutorService graphExecutor = graphThreads > 1
+        ? Executors.newFixedThreadPool(graphThreads,
+            new ThreadFactoryBuilder().setNameFormat("query-graph-%d").setDaemon(true).build())
+        : null;
+    queryExecutor = new QueryExecutor(graphRepository, QueryExecutor.DEFAULT_MAX_CACHE_WEIGHT, graphExecutor);
+
+    int queryThreads = Integer.getInteger(QUERY_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    int queryQueueSize = Integer.getInteger(QUERY_QUEUE_SIZE_PROPERTY, DEFAULT_QUERY_QUEUE_SIZE);
+    queryWorkers = new ThreadPoolExecutor(queryThreads, queryThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queryQueueSize),
+        new ThreadFactoryBuilder().setNameFormat("query-worker-%d").setDaemon(true).build());
+
     RoutingHandler routingHandler = new RoutingHandler();
-    routingHandler.add("GET", PATH + "{query}", Server::executeQuery);
+    routingHandler.add("GET", PATH + "{query}", exchange -> dispatchToWorkers(exchange, Server::executeQuery));
+    routingHandler.add("POST", BATCH_PATH, exchange -> dispatchToWorkers(exchange, Server::executeBatch));
+    routingHandler.add("OPTIONS", BATCH_PATH, Server::allowBatchRequests);
+    routingHandler.add("GET", METRICS_PATH, Server::sendMetrics);
 
     undertowServer = Undertow.builder()
         .addHttpListener(PORT, HOST)
@@ -43,19 +162,67 @@ public class Server {
     if (undertowServer != null) {
       undertowServer.stop();
     }
+    if (queryWorkers != null) {
+      queryWorkers.shutdownNow();
+    }
+  }
+
+  /**
+   * Passes the given {@link HttpServerExchange} to a query worker, which handles it with the given {@code handler}.
+   *
+   * <p>If the worker pool is overloaded, responds with <b>503</b> status code right away.
+   */
+  private static void dispatchToWorkers(HttpServerExchange exchange, Consumer<HttpServerExchange> handler) {
+    long requestStart = System.nanoTime();
+
+    // The exchange is passed to a worker only after this handler returns, so it cannot be completed twice.
+    exchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+      try {
+        queryWorkers.execute(() -> handleSafely(exchange, handler, requestStart));
+      } catch (RejectedExecutionException e) {
+        exchange.setStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+        exchange.getResponseSender().send("Server is overloaded, try again later.");
+        metrics.observeRequest(StatusCodes.SERVICE_UNAVAILABLE, requestStart);
+      }
+    });
+  }
+
+  /**
+   * Handles the given {@link HttpServerExchange} with the given {@code handler}, but also completes the exchange
+   * if the handler fails unexpectedly.
+   *
+   * <p>A dispatched exchange is not completed automatically, so without it the client would never get a response.
+   */
+  private static void handleSafely(HttpServerExchange exchange, Consumer<HttpServerExchange> handler,
+                                   long requestStart) {
+    try {
+      handler.accept(exchange);
+    } catch (RuntimeException e) {
+      System.err.println("Execution failed unexpectedly. Reason: " + e);
+      if (!exchange.isResponseStarted()) {
+        exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+      }
+      exchange.endExchange();
+    } finally {
+      metrics.observeRequest(exchange.getStatusCode(), requestStart);
+    }
   }
 
   /**
    * Extracts the query from {@link HttpServerExchange} and tries to execute it.
    *
-   * <p>If http response didn't contain <b>query</b> parameter then this method does nothing.
+   * <p>If http response didn't contain <b>query</b> parameter then this method sends an empty response.
    *
    * <p>Otherwise it executes query and if it was successful sends correct subgraphs from the
    * origin binding graphs as the result.
    *
    * <p>For <b>deps</b> query returns a list with a string representation of source node's dependencies.
-   * For <b>allpaths</b> and <b>somepath</b> returns a formatted {@link com.google.daggerquery.executor.models.Query.Path}
-   * representation with the node names separated by an arrow.
+   * For <b>allpaths</b> and <b>somepath</b> returns formatted paths with the node names separated by an arrow,
+   * <b>somepath</b> returns one of the shortest paths.
+   * For <b>allpathsgraph</b> returns edges lying on paths between nodes, each edge is formatted as a path with two nodes.
+   *
+   * <p>Successful responses carry an <b>ETag</b> derived from the graphs and the normalized query. If a request
+   * contains a matching <b>If-None-Match</b> header, the query is not executed and <b>304</b> is returned.
    */
   private static void executeQuery(HttpServerExchange exchange) {
     exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
@@ -63,16 +230,38 @@ public class Server {
 
     Deque<String> deque = exchange.getQueryParameters().get("query");
     if (deque == null) {
+      exchange.endExchange();
       return;
     }
 
     String[] args = deque.getFirst().split(" ");
     try {
-      ImmutableList<String> results = QueryExecutor.execute(args);
+      // Results depend only on graphs and the normalized query, so a client can reuse results it already has.
+      long parsingStart = System.nanoTime();
+      String entityTag = "W/\"" + queryExecutor.getResultsTag(args) + "\"";
+      metrics.observeStage("parse", parsingStart);
+
+      if (matchesEntityTag(exchange.getRequestHeaders().get(Headers.IF_NONE_MATCH), entityTag)) {
+        exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+        putCacheHeaders(exchange, entityTag);
+        exchange.endExchange();
+        return;
+      }
+
+      // The query has been parsed, so its name is one of the supported names.
+      // Results which are found lazily are found while they are sent, so they are observed in the serialize stage.
+      long executionStart = System.nanoTime();
+      QueryExecutor.ResultStream results;
+      try {
+        results = queryExecutor.executeLazily(args);
+      } finally {
+        metrics.observeQuery(args[0].toLowerCase(Locale.ROOT), System.nanoTime() - executionStart);
+      }
 
       exchange.setStatusCode(StatusCodes.OK);
+      putCacheHeaders(exchange, entityTag);
       exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
-      exchange.getResponseSender().send(new Gson().toJson(results));
+      sendResults(exchange, results);
     } catch (IllegalArgumentException e) {
       exchange.setStatusCode(StatusCodes.BAD_REQUEST);
 
@@ -87,4 +276,245 @@ public class Server {
       System.err.println(errorMessage);
     }
   }
+
+  /**
+   * Extracts a batch of queries from the body of {@link HttpServerExchange} and executes all of them.
+   *
+   * <p>The body must be a JSON array of queries, each query is a string in the same format as in a <b>GET</b>
+   * request. All queries are executed on the same graphs and equal queries are executed only once.
+   * Queries which are not started within {@code BATCH_TIMEOUT} are not executed and get an error.
+   *
+   * <p>Responds with a JSON array with an object for each query in the same order. An object contains
+   * the <b>query</b> itself and either its <b>results</b> or an <b>error</b> message.
+   */
+  private static void executeBatch(HttpServerExchange exchange) {
+    exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
+    exchange.startBlocking();
+
+    List<String> queries;
+    try {
+      long parsingStart = System.nanoTime();
+      queries = readBatch(exchange);
+      metrics.observeStage("parse", parsingStart);
+    } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+      exchange.setStatusCode(StatusCodes.BAD_REQUEST);
+
+      String errorMessage = "Execution failed. Reason: " + e.getMessage();
+      exchange.getResponseSender().send(errorMessage);
+      System.err.println(errorMessage);
+      return;
+    }
+
+    try {
+      List<String[]> batch = queries.stream().map(query -> query.split(" ")).collect(Collectors.toList());
+      long executionStart = System.nanoTime();
+      ImmutableList<QueryExecutor.BatchResult> batchResults =
+          queryExecutor.executeBatch(batch, BATCH_TIMEOUT.toNanos(), metrics::observeQuery);
+      metrics.observeStage("execute_batch", executionStart);
+
+      long estimatedSize = 2;
+      for (int index = 0; index < queries.size(); index++) {
+        estimatedSize += queries.get(index).length() + estimateSize(batchResults.get(index));
+      }
+
+      exchange.setStatusCode(StatusCodes.OK);
+      exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+      sendJson(exchange, estimatedSize, writer -> {
+        writer.beginArray();
+        for (int index = 0; index < queries.size(); index++) {
+          writer.beginObject();
+          writer.name("query").value(queries.get(index));
+
+          QueryExecutor.BatchResult batchResult = batchResults.get(index);
+          if (batchResult.isSuccessful()) {
+            writer.name("results");
+            writeResults(writer, batchResult.getResults()::forEach);
+          } else {
+            writer.name("error").value("Execution failed. Reason: " + batchResult.getErrorMessage());
+          }
+          writer.endObject();
+        }
+        writer.endArray();
+      });
+    } catch (IOException e) {
+      exchange.setStatusCode(StatusCodes.NOT_FOUND);
+
+      String errorMessage = "File with binding graph sources not found. Reason: " + e.getMessage();
+      exchange.getResponseSender().send(errorMessage);
+      System.err.println(errorMessage);
+    }
+  }
+
+  /**
+   * Reads a JSON array of queries from the body of a blocking {@link HttpServerExchange}.
+   *
+   * @throws IllegalArgumentException if the batch contains more than {@code MAX_BATCH_SIZE} queries
+   * @throws IllegalStateException if the body is not an array of strings
+   * @throws IOException if the body cannot be read or is not a valid JSON
+   */
+  private static List<String> readBatch(HttpServerExchange exchange) throws IOException {
+    List<String> queries = new ArrayList<>();
+    try (JsonReader reader = new JsonReader(new InputStreamReader(exchange.getInputStream(), UTF_8))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        if (queries.size() == MAX_BATCH_SIZE) {
+          throw new IllegalArgumentException("A batch may contain at most " + MAX_BATCH_SIZE + " queries.");
+        }
+        queries.add(reader.nextString());
+      }
+      reader.endArray();
+    }
+
+    return queries;
+  }
+
+  /**
+   * Responds to a preflight request, so browsers are allowed to send batches from other origins.
+   */
+  private static void allowBatchRequests(HttpServerExchange exchange) {
+    exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Origin"), "*");
+    exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Methods"), "POST");
+    exchange.getResponseHeaders().put(new HttpString("Access-Control-Allow-Headers"), "Content-Type");
+    exchange.setStatusCode(StatusCodes.NO_CONTENT);
+  }
+
+  /**
+   * Writes the given {@code results} to the response as a JSON array of strings and completes the exchange.
+   *
+   * <p>The size of results which are found lazily is unknown, so they are compressed if the client accepts it.
+   */
+  private static void sendResults(HttpServerExchange exchange, QueryExecutor.ResultStream results) {
+    exchange.startBlocking();
+    long estimatedSize = results.getKnownResults() == null ? Long.MAX_VALUE : estimateSize(results.getKnownResults());
+    sendJson(exchange, estimatedSize, writer -> writeResults(writer, results::forEachResult));
+  }
+
+  /**
+   * Writes a JSON document with the given {@code content} to the response of a blocking {@link HttpServerExchange}
+   * and completes the exchange.
+   *
+   * <p>The document is serialized directly into the response stream, so it is never built in memory.
+   * Since the length of a response is not known in advance, it is sent with chunked transfer encoding.
+   *
+   * <p>Responses which are estimated to be longer than {@code MIN_COMPRESSED_RESPONSE_SIZE} are compressed
+   * if the client accepts it.
+   */
+  private static void sendJson(HttpServerExchange exchange, long estimatedSize, JsonContent content) {
+    ContentEncoding encoding = estimatedSize >= MIN_COMPRESSED_RESPONSE_SIZE
+        ? ContentEncoding.negotiate(exchange.getRequestHeaders().getFirst(Headers.ACCEPT_ENCODING))
+        : null;
+    if (encoding != null) {
+      exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding.getName());
+    }
+
+    long serializationStart = System.nanoTime();
+    CountingOutputStream bodyStream = new CountingOutputStream(exchange.getOutputStream());
+    try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+        new OutputStreamWriter(makeBodyStream(bodyStream, encoding), UTF_8), RESPONSE_BUFFER_SIZE))) {
+      content.writeTo(writer);
+    } catch (IOException e) {
+      // The response has already been started, so the status code cannot be changed anymore.
+      System.err.println("Failed to send results. Reason: " + e.getMessage());
+    }
+    metrics.observeStage("serialize", serializationStart);
+    metrics.observeResponseSize(bodyStream.getCount());
+  }
+
+  /**
+   * Writes the given {@code results} as a JSON array of strings, which is flushed in chunks of
+   * {@code RESULTS_PER_CHUNK} results, so a client receives the first results while the rest are serialized.
+   */
+  private static void writeResults(JsonWriter writer, Results results) throws IOException {
+    writer.beginArray();
+    int[] count = {0};
+    try {
+      results.forEach(result -> {
+        try {
+          writer.value(result);
+          if (++count[0] % RESULTS_PER_CHUNK == 0) {
+            writer.flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.endArray();
+  }
+
+  private static long estimateSize(List<String> results) {
+    long estimatedSize = 2;
+    for (String result: results) {
+      estimatedSize += result.length() + 3;
+    }
+    return estimatedSize;
+  }
+
+  private static long estimateSize(QueryExecutor.BatchResult batchResult) {
+    return batchResult.isSuccessful()
+        ? estimateSize(batchResult.getResults())
+        : batchResult.getErrorMessage().length();
+  }
+
+  private static OutputStream makeBodyStream(OutputStream outputStream, ContentEncoding encoding) throws IOException {
+    return encoding == null ? outputStream : encoding.wrap(outputStream);
+  }
+
+  /**
+   * Sends all metrics of the server in the Prometheus text format.
+   */
+  private static void sendMetrics(HttpServerExchange exchange) {
+    exchange.setStatusCode(StatusCodes.OK);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8");
+    exchange.getResponseSender().send(metrics.format(queryExecutor.getCacheStats()));
+  }
+
+  private static void putCacheHeaders(HttpServerExchange exchange, String entityTag) {
+    exchange.getResponseHeaders().put(Headers.ETAG, entityTag);
+    exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, CACHE_CONTROL);
+    exchange.getResponseHeaders().put(Headers.VARY, Headers.ACCEPT_ENCODING.toString());
+  }
+
+  /**
+   * Checks if any of tags from <b>If-None-Match</b> header is weakly equal to the given {@code entityTag}.
+   *
+   * <p>A <b>*</b> doesn't match, since the tag is known before the query is executed, so it's not known yet
+   * whether the query has any results at all.
+   */
+  private static boolean matchesEntityTag(HeaderValues ifNoneMatch, String entityTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+
+    String opaqueTag = removeWeakPrefix(entityTag);
+    for (String headerValue: ifNoneMatch) {
+      for (String tag: headerValue.split(",")) {
+        String trimmedTag = tag.trim();
+        if (removeWeakPrefix(trimmedTag).equals(opaqueTag)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String removeWeakPrefix(String entityTag) {
+    return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+  }
+
+  /**
+   * A JSON document which is written to a response.
+   */
+  private interface JsonContent {
+    void writeTo(JsonWriter writer) throws IOException;
+  }
+
+  /**
+   * Results of a query which are passed to a consumer one by one.
+   */
+  private interface Results {
+    void forEach(Consumer<String> consumer);
+  }
 }
@@ -0,0 +1,126 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.server;
+
+import com.google.common.cache.CacheStats;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms which describe the work of the server, exposed in the Prometheus text format.
+ *
+ * <p>All metrics are updated without locks, so they can be recorded on each request.
+ */
+final class ServerMetrics {
+  private static final double[] LATENCY_BUCKETS =
+      {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+  private static final double[] SIZE_BUCKETS =
+      {256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216};
+
+  private final Histogram requestLatency = new Histogram(LATENCY_BUCKETS);
+  private final Histogram responseSize = new Histogram(SIZE_BUCKETS);
+  private final ConcurrentMap<String, Histogram> stageLatencies = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> queryLatencies = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+
+  /**
+   * Records the time of a processing stage, such as loading graphs or serializing results, which started
+   * at {@code startNanos}.
+   */
+  void observeStage(String stage, long startNanos) {
+    stageLatencies.computeIfAbsent(stage, key -> new Histogram(LATENCY_BUCKETS)).observe(secondsSince(startNanos));
+  }
+
+  /**
+   * Records the execution time of a query with the given name, which took {@code executionNanos}.
+   *
+   * <p>The name must be one of the supported query names, so the number of histograms stays small.
+   */
+  void observeQuery(String queryName, long executionNanos) {
+    queryLatencies.computeIfAbsent(queryName, key -> new Histogram(LATENCY_BUCKETS))
+        .observe(executionNanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  /**
+   * Records a completed request, which was received at {@code startNanos}.
+   */
+  void observeRequest(int statusCode, long startNanos) {
+    requestLatency.observe(secondsSince(startNanos));
+    responses.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+  }
+
+  void observeResponseSize(long bytes) {
+    responseSize.observe(bytes);
+  }
+
+  /**
+   * Returns all metrics in the Prometheus text format, together with statistics of the cache with query results.
+   */
+  String format(CacheStats cacheStats) {
+    StringBuilder output = new StringBuilder();
+
+    output.append("# HELP daggerquery_requests_total Completed requests by status code.\n");
+    output.append("# TYPE daggerquery_requests_total counter\n");
+    for (Map.Entry<Integer, LongAdder> entry: new TreeMap<>(responses).entrySet()) {
+      output.append("daggerquery_requests_total{status=\"").append(entry.getKey()).append("\"} ")
+          .append(entry.getValue().sum()).append('\n');
+    }
+
+    output.append("# HELP daggerquery_request_seconds Time from receiving a request to completing its response.\n");
+    output.append("# TYPE daggerquery_request_seconds histogram\n");
+    requestLatency.writeTo(output, "daggerquery_request_seconds", "");
+
+    writeHistograms(output, "daggerquery_stage_seconds", "stage", stageLatencies,
+        "Time of processing stages: loading and hashing graphs, parsing queries, execution and serialization.");
+    writeHistograms(output, "daggerquery_query_seconds", "query", queryLatencies,
+        "Execution time of queries by query name, including cached results.");
+
+    output.append("# HELP daggerquery_response_bytes Size of response bodies after compression.\n");
+    output.append("# TYPE daggerquery_response_bytes histogram\n");
+    responseSize.writeTo(output, "daggerquery_response_bytes", "");
+
+    writeCounter(output, "daggerquery_cache_hits_total", "Queries answered from the cache.", cacheStats.hitCount());
+    writeCounter(output, "daggerquery_cache_misses_total", "Queries executed on graphs.", cacheStats.missCount());
+    writeCounter(output, "daggerquery_cache_evictions_total", "Results evicted from the cache.",
+        cacheStats.evictionCount());
+
+    return output.toString();
+  }
+
+  private static void writeHistograms(StringBuilder output, String name, String labelName,
+                                      Map<String, Histogram> histograms, String help) {
+    output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    output.append("# TYPE ").append(name).append(" histogram\n");
+    for (Map.Entry<String, Histogram> entry: new TreeMap<>(histograms).entrySet()) {
+      entry.getValue().writeTo(output, name, labelName + "=\"" + entry.getKey() + "\"");
+    }
+  }
+
+  private static void writeCounter(StringBuilder output, String name, String help, long value) {
+    output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    output.append("# TYPE ").append(name).append(" counter\n");
+    output.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static double secondsSince(long startNanos) {
+    return (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+}
@@ -13,19 +13,28 @@
 # limitations under the License.
 
 load("@rules_java//java:defs.bzl", "java_binary")
+load("//src/com/google/daggerquery/executor:dagger_query_graph_file.bzl", "dagger_query_graph_file")
 load("//src/com/google/daggerquery/plugin:dagger_query_textproto.bzl", "dagger_query_textproto")
 
 def dagger_query_server(name, dagger_app_target):
    binding_graph_data_name = name + "_binding_graph_data"
+   graph_file_name = name + "_graph_file"
 
    dagger_query_textproto(
        name = binding_graph_data_name,
        dagger_app_target = dagger_app_target
    )
 
+   dagger_query_graph_file(
+       name = graph_file_name,
+       binding_graph_data = ":" + binding_graph_data_name
+   )
+
    java_binary(
      name = name,
      main_class = "com.google.daggerquery.server.Server",
      runtime_deps = ["//src/com/google/daggerquery/server:server"],
      resources = [":" + binding_graph_data_name],
+     data = [":" + graph_file_name],
+     jvm_flags = ["-Ddaggerquery.graph_file=$(rootpath :%s)" % graph_file_name],
    )
@@ -16,12 +16,16 @@ $(function () {
   $.DEPS_QUERY_NAME = 'deps';
   $.SOMEPATH_QUERY_NAME = 'somepath';
   $.ALLPATHS_QUERY_NAME = 'allpaths';
+  $.ALLPATHSGRAPH_QUERY_NAME = 'allpathsgraph';
+  $.COUNTPATHS_QUERY_NAME = 'countpaths';
   $.RDEPS_QUERY_NAME = 'rdeps';
   $.EXISTS_QUERY_NAME = 'exists';
 
   $.supportedQueries = new Map([
     [$.DEPS_QUERY_NAME, 1],
     [$.ALLPATHS_QUERY_NAME, 2],
+    [$.ALLPATHSGRAPH_QUERY_NAME, 2],
+    [$.COUNTPATHS_QUERY_NAME, 2],
     [$.SOMEPATH_QUERY_NAME, 2],
     [$.RDEPS_QUERY_NAME, 1],
     [$.EXISTS_QUERY_NAME, 1],
@@ -112,6 +116,10 @@ const queryExecutor = (function() {
           bindingGraph.addDeps(query[1], results);
         } else if (query[0] === $.ALLPATHS_QUERY_NAME || query[0] === $.SOMEPATH_QUERY_NAME) {
           bindingGraph.addPaths(results);
+        } else if (query[0] === $.ALLPATHSGRAPH_QUERY_NAME) {
+          bindingGraph.addSubgraph(query[1], query[2], results);
+        } else if (query[0] === $.COUNTPATHS_QUERY_NAME) {
+          bindingGraph.addPathCount(query[1], query[2], results[0]);
         } else if (query[0] === $.RDEPS_QUERY_NAME) {
           bindingGraph.addAncestors(query[1], results);
         } else if (query[0] === $.EXISTS_QUERY_NAME) {
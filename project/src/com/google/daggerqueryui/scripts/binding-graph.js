@@ -363,6 +363,52 @@ const bindingGraph = (function() {
       }
     },
 
+    /**
+     * Takes an array with edges lying on paths between source and target nodes and draws all of them.
+     *
+     * <p>Each edge is a path with two nodes separated with ' -> ' arrow.
+     *
+     * @param {string} source
+     * @param {string} target
+     * @param {string[]} edges
+     */
+    addSubgraph: function (source, target, edges) {
+      const baseColor = extractColor();
+      const highlightColor = extractColor();
+      for (const edge of edges) {
+        const nodesInEdge = edge.split(' -> ');
+        if (nodesInEdge.length !== 2) {
+          continue;
+        }
+
+        let type = EdgeType.noHighlight;
+        if (nodesInEdge[0] === source) {
+          type = EdgeType.highlightSource;
+        } else if (nodesInEdge[1] === target) {
+          type = EdgeType.highlightTarget;
+        }
+        addEdge(nodesInEdge[0], nodesInEdge[1], new EdgeStyle(type, baseColor, highlightColor));
+      }
+    },
+
+    /**
+     * Connects source and target nodes with a dashed edge labeled with the number of paths between them.
+     *
+     * @param {string} source
+     * @param {string} target
+     * @param {string} pathCount
+     */
+    addPathCount: function (source, target, pathCount) {
+      const highlightColor = extractColor();
+      const sourceId = addNode(source, new NodeStyle(highlightColor, ELLIPSE_SHAPE));
+      const targetId = addNode(target, new NodeStyle(highlightColor, ELLIPSE_SHAPE));
+      if (hasEdge(sourceId, targetId)) {
+        return;
+      }
+
+      edges.add({from: sourceId, to: targetId, arrows: 'to', color: GRAY_COLOR, dashes: true, label: pathCount});
+    },
+
     /**
      * Adds all source node's dependencies to the subgraph.
      * @param {string} source
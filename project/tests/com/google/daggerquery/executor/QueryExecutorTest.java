@@ -0,0 +1,460 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.daggerquery.executor.models.Query;
+import com.google.daggerquery.executor.models.QueryLimitExceededException;
+import com.google.daggerquery.executor.services.GraphRepository;
+import com.google.daggerquery.executor.services.SourcesLoader;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class QueryExecutorTest {
+
+  @Test
+  public void testExecutingQuery_WithSameQuery_ReturnsCachedResults() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    ImmutableList<String> firstResults = queryExecutor.execute(new String[] {"deps", "com.google.Component"});
+    ImmutableList<String> secondResults = queryExecutor.execute(new String[] {"DEPS", "com.google.Component"});
+
+    assertEquals(ImmutableList.of("com.google.CatsFactory"), firstResults);
+    assertSame(firstResults, secondResults);
+    assertEquals(1, queryExecutor.getCacheStats().hitCount());
+    assertEquals(1, queryExecutor.getCacheStats().missCount());
+  }
+
+  @Test
+  public void testExecutingQuery_WithDifferentParameters_DoesNotReturnCachedResults() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    queryExecutor.execute(new String[] {"deps", "com.google.Component"});
+    ImmutableList<String> results = queryExecutor.execute(new String[] {"rdeps", "com.google.CatsFactory"});
+
+    assertEquals(ImmutableList.of("com.google.Component"), results);
+    assertEquals(0, queryExecutor.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testExecutingQuery_WithDisabledCache_ExecutesQueryEachTime() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()),
+        /*maxCacheWeight =*/ 0);
+
+    queryExecutor.execute(new String[] {"deps", "com.google.Component"});
+    queryExecutor.execute(new String[] {"deps", "com.google.Component"});
+
+    assertEquals(0, queryExecutor.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testGettingResultsTag_DependsOnNormalizedQuery() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    String resultsTag = queryExecutor.getResultsTag(new String[] {"deps", "com.google.Component"});
+    assertEquals(resultsTag, queryExecutor.getResultsTag(new String[] {"DEPS", "com.google.Component"}));
+    assertNotEquals(resultsTag, queryExecutor.getResultsTag(new String[] {"rdeps", "com.google.Component"}));
+    assertEquals(0, queryExecutor.getCacheStats().requestCount());
+  }
+
+  @Test
+  public void testExecutingBatch_ExecutesEqualQueriesOnce() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    ImmutableList<QueryExecutor.BatchResult> batchResults = queryExecutor.executeBatch(Arrays.asList(
+        new String[] {"deps", "com.google.Component"},
+        new String[] {"rdeps", "com.google.Component"},
+        new String[] {"DEPS", "com.google.Component"},
+        new String[] {"paths", "com.google.Component"}));
+
+    assertEquals(4, batchResults.size());
+    assertEquals(ImmutableList.of("com.google.CatsFactory"), batchResults.get(0).getResults());
+    assertEquals("Nothing found, list with results is empty.", batchResults.get(1).getErrorMessage());
+    assertSame(batchResults.get(0), batchResults.get(2));
+    assertEquals("Query with name \"paths\" isn't supported.", batchResults.get(3).getErrorMessage());
+    assertEquals(2, queryExecutor.getCacheStats().requestCount());
+  }
+
+  @Test
+  public void testExecutingBatch_NotifiesListenerAboutExecutedQueries() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    List<String> executedQueries = new ArrayList<>();
+    queryExecutor.executeBatch(Arrays.asList(
+        new String[] {"DEPS", "com.google.Component"},
+        new String[] {"deps", "com.google.Component"},
+        new String[] {"rdeps", "com.google.Component"},
+        new String[] {"paths", "com.google.Component"}),
+        /*timeoutNanos =*/ Long.MAX_VALUE, (queryName, executionNanos) -> executedQueries.add(queryName));
+
+    assertEquals(Arrays.asList("deps", "rdeps"), executedQueries);
+  }
+
+  @Test
+  public void testExecutingBatch_WhenTimeLimitIsExceeded_DoesNotExecuteQueries() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    ImmutableList<QueryExecutor.BatchResult> batchResults = queryExecutor.executeBatch(Arrays.asList(
+        new String[] {"deps", "com.google.Component"},
+        new String[] {"paths", "com.google.Component"}), /*timeoutNanos =*/ 0, (queryName, executionNanos) -> fail());
+
+    assertEquals("The time limit of the batch is exceeded, the query was not executed.",
+        batchResults.get(0).getErrorMessage());
+    assertEquals("Query with name \"paths\" isn't supported.", batchResults.get(1).getErrorMessage());
+    assertEquals(0, queryExecutor.getCacheStats().requestCount());
+  }
+
+  @Test
+  public void testExecutingBatch_WithSpacesInParameters_DoesNotMixUpQueries() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new SingleGraphSourcesLoader()));
+
+    ImmutableList<QueryExecutor.BatchResult> batchResults = queryExecutor.executeBatch(Arrays.asList(
+        new String[] {"somepath", "com.google.Component com.google.CatsFactory", "com.google.Component"},
+        new String[] {"somepath", "com.google.Component", "com.google.CatsFactory com.google.Component"}));
+
+    assertNotEquals(batchResults.get(0).getErrorMessage(), batchResults.get(1).getErrorMessage());
+    assertEquals(2, queryExecutor.getCacheStats().requestCount());
+  }
+
+  @Test
+  public void testExecutingQuery_WithPattern_ExecutesQueryOnAllGraphs() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()));
+
+    assertEquals(ImmutableList.of("com.google.Component"),
+        queryExecutor.execute(new String[] {"rdeps", "com.google.H*"}));
+    assertEquals(ImmutableList.of("com.google.CatsFactory", "com.google.Helper"),
+        queryExecutor.execute(new String[] {"deps", "com.google.Comp*"}));
+  }
+
+  @Test
+  public void testExecutingQuery_WithGraphExecutor_MergesResultsInOrderOfGraphs() throws IOException {
+    ExecutorService graphExecutor = Executors.newFixedThreadPool(2);
+    try {
+      QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()),
+          /*maxCacheWeight =*/ 0, graphExecutor);
+
+      for (int attempt = 0; attempt < 10; attempt++) {
+        assertEquals(ImmutableList.of("com.google.CatsFactory", "com.google.Helper"),
+            queryExecutor.execute(new String[] {"deps", "com.google.Component"}));
+      }
+    } finally {
+      graphExecutor.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecutingQuery_WithGraphExecutor_WhenQueryFailsOnAllGraphs_ThrowsIllegalArgumentException()
+      throws IOException {
+    ExecutorService graphExecutor = Executors.newFixedThreadPool(2);
+    try {
+      QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()),
+          /*maxCacheWeight =*/ 0, graphExecutor);
+
+      queryExecutor.execute(new String[] {"rdeps", "com.google.Component"});
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Nothing found, list with results is empty.", e.getMessage());
+    } finally {
+      graphExecutor.shutdown();
+    }
+  }
+
+  @Test
+  public void testExecutingQuery_WhenLimitIsExceededOnOneOfGraphs_ThrowsQueryLimitExceededException()
+      throws IOException {
+    for (ExecutorService graphExecutor: Arrays.asList(null, Executors.newFixedThreadPool(2))) {
+      try {
+        QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TooManyPathsSourcesLoader()),
+            /*maxCacheWeight =*/ 0, graphExecutor);
+
+        queryExecutor.execute(new String[] {"allpaths", "com.google.Component", "com.google.Cat"});
+        fail();
+      } catch (QueryLimitExceededException e) {
+        assertEquals("There are more than " + Query.MAX_NUMBER_OF_PATHS
+            + " paths between specified nodes, try `somepath` query instead.", e.getMessage());
+      } finally {
+        if (graphExecutor != null) {
+          graphExecutor.shutdown();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testExecutingQuery_WithGraphExecutor_WhenLimitIsExceeded_CancelsExecutionOnOtherGraphs()
+      throws IOException {
+    // Only the first graph is processed until the executor is released.
+    PausingExecutor graphExecutor = new PausingExecutor(/*startedTaskLimit =*/ 1);
+    try {
+      GraphRepository graphRepository = new GraphRepository(new TooManyPathsSourcesLoader(/*ladderCount =*/ 2));
+      QueryExecutor queryExecutor = new QueryExecutor(graphRepository, /*maxCacheWeight =*/ 0, graphExecutor);
+
+      queryExecutor.execute(new String[] {"allpaths", "com.google.Component", "com.google.Cat"});
+      fail();
+    } catch (QueryLimitExceededException e) {
+      assertEquals(3, graphExecutor.tasks.size());
+      assertFalse(graphExecutor.tasks.get(0).isCancelled());
+      assertTrue(graphExecutor.tasks.get(1).isCancelled());
+      assertTrue(graphExecutor.tasks.get(2).isCancelled());
+    } finally {
+      graphExecutor.release();
+    }
+  }
+
+  @Test
+  public void testExecutingBatch_WithGraphExecutor_WhenTimeLimitIsExceeded_CancelsRunningQuery() throws IOException {
+    PausingExecutor graphExecutor = new PausingExecutor(/*startedTaskLimit =*/ 0);
+    try {
+      QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()),
+          /*maxCacheWeight =*/ 0, graphExecutor);
+
+      ImmutableList<QueryExecutor.BatchResult> batchResults = queryExecutor.executeBatch(
+          Collections.singletonList(new String[] {"deps", "com.google.Component"}),
+          /*timeoutNanos =*/ TimeUnit.MILLISECONDS.toNanos(100), (queryName, executionNanos) -> {});
+
+      assertEquals("The time limit of the batch is exceeded, the query was not completed.",
+          batchResults.get(0).getErrorMessage());
+      assertEquals(2, graphExecutor.tasks.size());
+      assertTrue(graphExecutor.tasks.get(0).isCancelled());
+      assertTrue(graphExecutor.tasks.get(1).isCancelled());
+    } finally {
+      graphExecutor.release();
+    }
+  }
+
+  /**
+   * An executor with a single thread which doesn't start more than {@code startedTaskLimit} tasks
+   * until it's released, it keeps all submitted tasks.
+   */
+  private static class PausingExecutor extends ThreadPoolExecutor {
+    private final List<Future<?>> tasks = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicInteger startedTaskLimit;
+
+    PausingExecutor(int startedTaskLimit) {
+      super(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+      this.startedTaskLimit = new AtomicInteger(startedTaskLimit);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+      RunnableFuture<T> task = super.newTaskFor(callable);
+      tasks.add(task);
+      return task;
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+      if (startedTaskLimit.getAndDecrement() <= 0) {
+        Uninterruptibles.awaitUninterruptibly(released);
+      }
+    }
+
+    void release() {
+      released.countDown();
+      shutdown();
+    }
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns a single graph com.google.Component --> com.google.CatsFactory.
+   */
+  @Test
+  public void testExecutingQueryLazily_ReturnsSameResultsAsExecutingQuery() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()),
+        /*maxCacheWeight =*/ 0, /*graphExecutor =*/ null);
+
+    for (String[] args: Arrays.asList(new String[] {"deps", "com.google.Component"},
+        new String[] {"rdeps", "com.google.H*"},
+        new String[] {"allpathsgraph", "com.google.Component", "com.google.Helper"},
+        new String[] {"somepath", "com.google.Component", "com.google.Helper"})) {
+      List<String> streamedResults = new ArrayList<>();
+      queryExecutor.executeLazily(args).forEachResult(streamedResults::add);
+
+      assertEquals(queryExecutor.execute(args), streamedResults);
+    }
+  }
+
+  @Test
+  public void testExecutingQueryLazily_WithSmallResults_CachesResults() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()));
+
+    String[] args = {"deps", "com.google.Component"};
+    QueryExecutor.ResultStream firstResults = queryExecutor.executeLazily(args);
+    assertNull(firstResults.getKnownResults());
+    firstResults.forEachResult(result -> {});
+    QueryExecutor.ResultStream secondResults = queryExecutor.executeLazily(args);
+
+    assertEquals(ImmutableList.of("com.google.CatsFactory", "com.google.Helper"), secondResults.getKnownResults());
+    assertEquals(1, queryExecutor.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testExecutingQuery_WithLargeResults_DoesNotCacheResults() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new LargeGraphSourcesLoader()));
+
+    List<String> streamedResults = new ArrayList<>();
+    queryExecutor.executeLazily(new String[] {"deps", "com.google.Component"}).forEachResult(streamedResults::add);
+    ImmutableList<String> results = queryExecutor.execute(new String[] {"deps", "com.google.Component"});
+
+    assertEquals(LargeGraphSourcesLoader.DEPENDENCY_COUNT, streamedResults.size());
+    assertEquals(results, streamedResults);
+    assertNotSame(results, queryExecutor.execute(new String[] {"deps", "com.google.Component"}));
+    assertEquals(0, queryExecutor.getCacheStats().hitCount());
+  }
+
+  @Test
+  public void testExecutingQueryLazily_WhenQueryFails_ThrowsBeforeResultsAreConsumed() throws IOException {
+    QueryExecutor queryExecutor = new QueryExecutor(new GraphRepository(new TwoGraphsSourcesLoader()));
+
+    try {
+      queryExecutor.executeLazily(new String[] {"rdeps", "com.google.Component"});
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Nothing found, list with results is empty.", e.getMessage());
+    }
+  }
+
+  private static class SingleGraphSourcesLoader extends SourcesLoader {
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() {
+      DependencyProto.Dependency factoryNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.CatsFactory").build();
+      BindingGraphProto.BindingGraph bindingGraph = BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component",
+              BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().addDependency(factoryNode).build())
+          .putAdjacencyList("com.google.CatsFactory",
+              BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().build())
+          .build();
+      return Collections.singletonList(bindingGraph);
+    }
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns two graphs: com.google.Component --> com.google.CatsFactory
+   * and com.google.Component --> com.google.Helper.
+   */
+  private static class TwoGraphsSourcesLoader extends SourcesLoader {
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() {
+      return Arrays.asList(makeGraph("com.google.CatsFactory"), makeGraph("com.google.Helper"));
+    }
+
+    private static BindingGraphProto.BindingGraph makeGraph(String dependency) {
+      DependencyProto.Dependency dependencyNode = DependencyProto.Dependency.newBuilder().setTarget(dependency).build();
+      return BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component",
+              BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().addDependency(dependencyNode).build())
+          .build();
+    }
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns a graph where com.google.Component has so many dependencies
+   * that their names are longer than {@code QueryExecutor.MAX_CACHED_RESULTS_WEIGHT}.
+   */
+  private static class LargeGraphSourcesLoader extends SourcesLoader {
+    static final int DEPENDENCY_COUNT = 20000;
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder listBuilder =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (int index = 0; index < DEPENDENCY_COUNT; index++) {
+        listBuilder.addDependency(DependencyProto.Dependency.newBuilder().setTarget("com.google.Dependency" + index).build());
+      }
+      return Collections.singletonList(BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component", listBuilder.build())
+          .build());
+    }
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns the given number of ladders of com.google.Component, com.google.Cat
+   * and nodes between them with 2^14 paths, followed by a graph with a single path between these nodes.
+   */
+  private static class TooManyPathsSourcesLoader extends SourcesLoader {
+    private final int ladderCount;
+
+    TooManyPathsSourcesLoader() {
+      this(/*ladderCount =*/ 1);
+    }
+
+    TooManyPathsSourcesLoader(int ladderCount) {
+      this.ladderCount = ladderCount;
+    }
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() {
+      BindingGraphProto.BindingGraph.Builder ladderGraph = BindingGraphProto.BindingGraph.newBuilder();
+      String previousNode = "com.google.Component";
+      for (int step = 0; step < 14; step++) {
+        String nextNode = step == 13 ? "com.google.Cat" : "com.google.Step" + step;
+        ladderGraph.putAdjacencyList(previousNode + "Left", makeDependencies(nextNode));
+        ladderGraph.putAdjacencyList(previousNode + "Right", makeDependencies(nextNode));
+        ladderGraph.putAdjacencyList(previousNode, makeDependencies(previousNode + "Left", previousNode + "Right"));
+        previousNode = nextNode;
+      }
+
+      BindingGraphProto.BindingGraph singlePathGraph = BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component", makeDependencies("com.google.Cat"))
+          .build();
+      List<BindingGraphProto.BindingGraph> bindingGraphs = new ArrayList<>();
+      for (int index = 0; index < ladderCount; index++) {
+        bindingGraphs.add(ladderGraph.build());
+      }
+      bindingGraphs.add(singlePathGraph);
+      return bindingGraphs;
+    }
+
+    private static BindingGraphProto.BindingGraph.ListWithDependencies makeDependencies(String... dependencies) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder listBuilder =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (String dependency: dependencies) {
+        listBuilder.addDependency(DependencyProto.Dependency.newBuilder().setTarget(dependency).build());
+      }
+      return listBuilder.build();
+    }
+  }
+}
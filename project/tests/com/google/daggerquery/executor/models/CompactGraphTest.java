@@ -0,0 +1,126 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import org.junit.Test;
+
+public class CompactGraphTest {
+
+  @Test
+  public void testGettingDependencies_ReturnsSortedDependencies() {
+    Graph graph = makeBindingGraph();
+
+    ImmutableList<String> expectedOutput = ImmutableList.of("com.google.Cat", "com.google.CatsFactory", "com.google.Helper");
+    assertEquals(expectedOutput, graph.getDependencies("com.google.Component").asList());
+  }
+
+  @Test
+  public void testGettingDependencies_WithDuplicatedDependencies_ReturnsEachDependencyOnce() {
+    Graph graph = makeBindingGraph();
+
+    assertEquals(ImmutableSet.of("com.google.Cat"), graph.getDependencies("com.google.CatsFactory"));
+  }
+
+  @Test
+  public void testGettingAncestors_ReturnsSortedAncestors() {
+    Graph graph = makeBindingGraph();
+
+    ImmutableList<String> expectedOutput = ImmutableList.of("com.google.CatsFactory", "com.google.Component");
+    assertEquals(expectedOutput, graph.getAncestors("com.google.Cat").asList());
+    assertTrue(graph.getAncestors("com.google.Component").isEmpty());
+  }
+
+  @Test
+  public void testContainsNode_WithTargetWithoutOwnAdjacencyList() {
+    Graph graph = makeBindingGraph();
+
+    assertTrue(graph.containsNode("com.google.Helper"));
+    assertTrue(graph.getDependencies("com.google.Helper").isEmpty());
+    assertFalse(graph.containsNode("com.google.Kitten"));
+  }
+
+  @Test
+  public void testGettingAllNodes() {
+    Graph graph = makeBindingGraph();
+
+    ImmutableSet<String> expectedOutput =
+        ImmutableSet.of("com.google.Cat", "com.google.CatsFactory", "com.google.Component", "com.google.Helper");
+    assertEquals(expectedOutput, graph.getAllNodes());
+  }
+
+  @Test
+  public void testTraversingGraph_WithNodeIds() {
+    Graph graph = makeBindingGraph();
+
+    assertEquals(4, graph.getNodeCount());
+    assertEquals(-1, graph.getNodeId("com.google.Kitten"));
+
+    int componentId = graph.getNodeId("com.google.Component");
+    assertEquals("com.google.Component", graph.getNodeName(componentId));
+    assertEquals(3, graph.getDependencyCount(componentId));
+    assertEquals(0, graph.getAncestorCount(componentId));
+
+    int catId = graph.getNodeId("com.google.Cat");
+    assertEquals(catId, graph.getDependency(componentId, 0));
+    assertEquals(2, graph.getAncestorCount(catId));
+    assertEquals(graph.getNodeId("com.google.CatsFactory"), graph.getAncestor(catId, 0));
+    assertEquals(componentId, graph.getAncestor(catId, 1));
+  }
+
+  /*
+   * Makes a binding graph with the following structure:
+   *
+   * com.google.Component --> com.google.CatsFactory --> com.google.Cat
+   * com.google.Component --> com.google.Cat
+   * com.google.Component --> com.google.Helper
+   *
+   * The edge between com.google.CatsFactory and com.google.Cat is duplicated and
+   * com.google.Helper doesn't have its own list with dependencies.
+   */
+  private Graph makeBindingGraph() {
+    DependencyProto.Dependency factoryNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.CatsFactory").build();
+    DependencyProto.Dependency catNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.Cat").build();
+    DependencyProto.Dependency helperNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.Helper").build();
+
+    BindingGraphProto.BindingGraph.ListWithDependencies componentNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .addDependency(helperNode)
+        .addDependency(factoryNode)
+        .addDependency(catNode)
+        .build();
+    BindingGraphProto.BindingGraph.ListWithDependencies catsFactoryNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .addDependency(catNode)
+        .addDependency(catNode)
+        .build();
+    BindingGraphProto.BindingGraph.ListWithDependencies catNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .build();
+
+    BindingGraphProto.BindingGraph bindingGraph = BindingGraphProto.BindingGraph.newBuilder()
+        .putAdjacencyList("com.google.Component", componentNodeDeps)
+        .putAdjacencyList("com.google.CatsFactory", catsFactoryNodeDeps)
+        .putAdjacencyList("com.google.Cat", catNodeDeps)
+        .build();
+    return new CompactGraph(bindingGraph);
+  }
+}
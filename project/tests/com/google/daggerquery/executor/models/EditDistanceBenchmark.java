@@ -0,0 +1,126 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link EditDistance} with the full matrix algorithm which was used before to suggest node names.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditDistanceBenchmark {
+
+  @Param({
+      "com.google.Cat",
+      "com.google.Provider[com.google.cats.CatsFactory]",
+      "dagger.Lazy<java.util.Map<java.lang.Class<? extends com.google.Animal>, javax.inject.Provider<com.google.Animal>>>"
+  })
+  public String node;
+
+  private String[] candidates;
+  private EditDistance editDistance;
+
+  @Setup
+  public void setUp() {
+    // A close match, a name with too many typos and a name of a different length.
+    candidates = new String[] {
+        node.replace('o', 'a'),
+        new StringBuilder(node).reverse().toString(),
+        node.substring(0, node.length() / 2)
+    };
+
+    editDistance = new EditDistance();
+    editDistance.setPattern(node);
+  }
+
+  @Benchmark
+  public int measureEditDistance() {
+    int total = 0;
+    for (String candidate: candidates) {
+      total += editDistance.calculateDistance(candidate, NodeNameMatcher.MAX_NUMBER_OF_MISPLACED_LETTERS);
+    }
+    return total;
+  }
+
+  @Benchmark
+  public int measureFullMatrix() {
+    int total = 0;
+    for (String candidate: candidates) {
+      total += calculateFullMatrixDistance(candidate, node);
+    }
+    return total;
+  }
+
+  /**
+   * A copy of the method which was used in {@link Query} before {@link EditDistance}.
+   *
+   * <p>Measures the difference between two strings using a
+   * <a href = "https://en.wikipedia.org/wiki/Levenshtein_distance">Levenshtein distance algorithm</a>.
+   *
+   * @return the number of changes required to get one string from another,
+   * where each change is a single character modification (substitution, deletion or insertion)
+   */
+  private static int calculateFullMatrixDistance(String firstString, String secondString) {
+    int firstLength = firstString.length();
+    int secondLength = secondString.length();
+
+    int[][] distances = new int[firstLength + 1][secondLength + 1];
+
+    for (int index = 0; index <= firstLength; index++) {
+      distances[index][0] = index;
+    }
+
+    for (int index = 0; index <= secondLength; index++) {
+      distances[0][index] = index;
+    }
+
+    for (int firstIndex = 0; firstIndex < firstLength; firstIndex++) {
+      for (int secondIndex = 0; secondIndex < secondLength; secondIndex++) {
+        if (firstString.charAt(firstIndex) == secondString.charAt(secondIndex)) {
+          distances[firstIndex + 1][secondIndex + 1] = distances[firstIndex][secondIndex];
+        } else {
+          int replaceCost = distances[firstIndex][secondIndex] + 1;
+          int insertCost = distances[firstIndex][secondIndex + 1] + 1;
+          int deleteCost = distances[firstIndex + 1][secondIndex] + 1;
+
+          distances[firstIndex + 1][secondIndex + 1] =
+              Collections.min(Arrays.asList(replaceCost, insertCost, deleteCost));
+        }
+      }
+    }
+
+    return distances[firstLength][secondLength];
+  }
+}
@@ -0,0 +1,120 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class EditDistanceTest {
+
+  private static final String ALPHABET = "abcABC.[]<>\u0436\u4e2d";
+
+  @Test
+  public void testCalculatingDistance_WithShortPattern() {
+    EditDistance editDistance = new EditDistance();
+    editDistance.setPattern("com.google.Cat");
+
+    assertEquals(0, editDistance.calculateDistance("com.google.Cat", 3));
+    assertEquals(1, editDistance.calculateDistance("com.google.Car", 3));
+    assertEquals(3, editDistance.calculateDistance("org.google.Cat", 3));
+    assertEquals(4, editDistance.calculateDistance("com.example.Cat", 3));
+  }
+
+  @Test
+  public void testCalculatingDistance_WithEmptyStrings() {
+    EditDistance editDistance = new EditDistance();
+    editDistance.setPattern("");
+
+    assertEquals(0, editDistance.calculateDistance("", 3));
+    assertEquals(2, editDistance.calculateDistance("ab", 3));
+    assertEquals(4, editDistance.calculateDistance("abcdef", 3));
+
+    editDistance.setPattern("abc");
+    assertEquals(3, editDistance.calculateDistance("", 3));
+  }
+
+  @Test
+  public void testCalculatingDistance_WithLongPattern() {
+    String pattern = "com.google.Provider[com.google.Map<com.google.Key, com.google.Provider[com.google.Value]>]";
+    EditDistance editDistance = new EditDistance();
+    editDistance.setPattern(pattern);
+
+    assertEquals(0, editDistance.calculateDistance(pattern, 3));
+    assertEquals(2, editDistance.calculateDistance(pattern.replace("Key", "Kay").replace("Value", "Valu"), 3));
+    assertEquals(4, editDistance.calculateDistance(pattern.replace("google", "gogle"), 3));
+  }
+
+  @Test
+  public void testCalculatingDistance_MatchesFullMatrix() {
+    Random random = new Random(42);
+    EditDistance editDistance = new EditDistance();
+
+    for (int iteration = 0; iteration < 2000; iteration++) {
+      String pattern = makeRandomString(random, random.nextInt(100));
+      String text = mutate(random, pattern, random.nextInt(8));
+      int maxDistance = random.nextInt(6);
+
+      editDistance.setPattern(pattern);
+      int expectedDistance = Math.min(calculateFullMatrixDistance(pattern, text), maxDistance + 1);
+
+      assertEquals(pattern + " / " + text, expectedDistance, editDistance.calculateDistance(text, maxDistance));
+    }
+  }
+
+  private static String makeRandomString(Random random, int length) {
+    StringBuilder builder = new StringBuilder();
+    for (int index = 0; index < length; index++) {
+      builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return builder.toString();
+  }
+
+  private static String mutate(Random random, String original, int numberOfChanges) {
+    StringBuilder builder = new StringBuilder(original);
+    for (int change = 0; change < numberOfChanges; change++) {
+      char character = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+      int operation = random.nextInt(3);
+      if (operation == 0 || builder.length() == 0) {
+        builder.insert(random.nextInt(builder.length() + 1), character);
+      } else if (operation == 1) {
+        builder.deleteCharAt(random.nextInt(builder.length()));
+      } else {
+        builder.setCharAt(random.nextInt(builder.length()), character);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static int calculateFullMatrixDistance(String firstString, String secondString) {
+    int[][] distances = new int[firstString.length() + 1][secondString.length() + 1];
+    for (int firstIndex = 0; firstIndex <= firstString.length(); firstIndex++) {
+      for (int secondIndex = 0; secondIndex <= secondString.length(); secondIndex++) {
+        if (firstIndex == 0 || secondIndex == 0) {
+          distances[firstIndex][secondIndex] = firstIndex + secondIndex;
+        } else {
+          int replaceCost = distances[firstIndex - 1][secondIndex - 1]
+              + (firstString.charAt(firstIndex - 1) == secondString.charAt(secondIndex - 1) ? 0 : 1);
+          distances[firstIndex][secondIndex] = Math.min(replaceCost,
+              Math.min(distances[firstIndex - 1][secondIndex], distances[firstIndex][secondIndex - 1]) + 1);
+        }
+      }
+    }
+    return distances[firstString.length()][secondString.length()];
+  }
+}
@@ -0,0 +1,273 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class GraphTraversalTest {
+
+  @Test
+  public void testFindingSimplePaths_WithDeepChain_DoesNotOverflowStack() {
+    int chainLength = 100_000;
+    Graph graph = makeChain(chainLength, /*withLoop =*/ false);
+
+    List<Integer> pathLengths = new ArrayList<>();
+    GraphTraversal.forEachSimplePath(graph, graph.getNodeId(makeNodeName(0)),
+        graph.getNodeId(makeNodeName(chainLength - 1)), (nodeIds, length) -> pathLengths.add(length));
+
+    assertArrayEquals(new Integer[] {chainLength}, pathLengths.toArray());
+  }
+
+  @Test
+  public void testFindingSimplePaths_WithLoop_VisitsEachNodeOncePerPath() {
+    // The last node depends on the first one, so the chain is also a loop.
+    Graph graph = makeChain(5, /*withLoop =*/ true);
+    int source = graph.getNodeId(makeNodeName(1));
+    int target = graph.getNodeId(makeNodeName(0));
+
+    List<String> paths = new ArrayList<>();
+    GraphTraversal.forEachSimplePath(graph, source, target, (nodeIds, length) -> {
+      paths.add(Arrays.toString(Arrays.copyOf(nodeIds, length)));
+      return true;
+    });
+
+    assertEquals(1, paths.size());
+    assertEquals(Arrays.toString(new int[] {1, 2, 3, 4, 0}), paths.get(0));
+  }
+
+  @Test
+  public void testFindingSimplePaths_WithNestedTraversal_StopsOnlyOuterTraversal() {
+    Graph graph = makeChain(3, /*withLoop =*/ false);
+    int source = graph.getNodeId(makeNodeName(0));
+    int target = graph.getNodeId(makeNodeName(2));
+
+    List<Integer> innerPathLengths = new ArrayList<>();
+    GraphTraversal.forEachSimplePath(graph, source, target, (nodeIds, length) -> {
+      GraphTraversal.forEachSimplePath(graph, nodeIds[1], target, (innerNodeIds, innerLength) -> {
+        innerPathLengths.add(innerLength);
+        return true;
+      });
+      return false;
+    });
+
+    assertArrayEquals(new Integer[] {2}, innerPathLengths.toArray());
+
+    // Buffers of the stopped traversal are left clean for the next one.
+    List<Integer> pathLengths = new ArrayList<>();
+    GraphTraversal.forEachSimplePath(graph, source, target, (nodeIds, length) -> pathLengths.add(length));
+    assertArrayEquals(new Integer[] {3}, pathLengths.toArray());
+  }
+
+  @Test
+  public void testFindingSimplePaths_SkipsNodesWhichCannotReachTarget() {
+    // Every path between dead-end nodes is a distinct simple path, so visiting them all would take ages.
+    int deadEndCount = 40;
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    for (int index = 0; index < deadEndCount; index++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (int nextIndex = index + 1; nextIndex < deadEndCount; nextIndex++) {
+        nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget(makeNodeName(nextIndex)).build());
+      }
+      if (index == 0) {
+        nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget("com.google.Target").build());
+      }
+      bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+    }
+    Graph graph = new CompactGraph(bindingGraph.build());
+
+    List<Integer> pathLengths = new ArrayList<>();
+    boolean isCompleted = GraphTraversal.forEachSimplePath(graph, graph.getNodeId(makeNodeName(0)),
+        graph.getNodeId("com.google.Target"), TimeUnit.SECONDS.toNanos(10), (nodeIds, length) -> pathLengths.add(length));
+
+    assertTrue(isCompleted);
+    assertArrayEquals(new Integer[] {2}, pathLengths.toArray());
+  }
+
+  @Test
+  public void testFindingSimplePaths_WhenTimeoutExpires_ReturnsFalse() {
+    Graph graph = makeChain(10_000, /*withLoop =*/ false);
+
+    boolean isCompleted = GraphTraversal.forEachSimplePath(graph, graph.getNodeId(makeNodeName(0)),
+        graph.getNodeId(makeNodeName(9_999)), /*timeoutNanos =*/ 0, (nodeIds, length) -> true);
+
+    assertFalse(isCompleted);
+  }
+
+  @Test
+  public void testFindingEdgesOnPaths_WithLoop_SkipsEdgesLeavingTargetAndEnteringSource() {
+    Graph graph = makeChain(5, /*withLoop =*/ true);
+
+    List<String> edges = new ArrayList<>();
+    GraphTraversal.forEachEdgeOnPaths(graph, 1, 3, (source, target) -> edges.add(source + " -> " + target));
+
+    assertEquals(Arrays.asList("1 -> 2", "2 -> 3"), edges);
+  }
+
+  @Test
+  public void testCountingPaths_MatchesNumberOfSimplePaths() {
+    Random random = new Random(42);
+    for (int iteration = 0; iteration < 100; iteration++) {
+      // Dependencies always lead to nodes with bigger indexes, so the graph has no loops.
+      int nodeCount = 2 + random.nextInt(15);
+      BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+      for (int index = 0; index < nodeCount; index++) {
+        BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+            BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+        for (int nextIndex = index + 1; nextIndex < nodeCount; nextIndex++) {
+          if (random.nextInt(3) == 0) {
+            nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget(makeNodeName(nextIndex)).build());
+          }
+        }
+        bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+      }
+      Graph graph = new CompactGraph(bindingGraph.build());
+
+      int target = nodeCount - 1;
+      long[] numberOfPaths = {0};
+      GraphTraversal.forEachSimplePath(graph, 0, target, (nodeIds, length) -> ++numberOfPaths[0] > 0);
+
+      assertEquals(BigInteger.valueOf(numberOfPaths[0]), GraphTraversal.countPaths(graph, 0, target));
+    }
+  }
+
+  @Test
+  public void testCountingPaths_WithLoop_CountsLoopAsSingleNode() {
+    // 0 -> 1 -> 2 -> 3 -> 4 -> 5 -> 0, and additionally 0 -> 6 -> 7, 3 -> 6, 3 -> 7.
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    int[][] dependencies = {{1, 6}, {2}, {3}, {4, 6, 7}, {5}, {0}, {7}, {}};
+    for (int index = 0; index < dependencies.length; index++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (int nextIndex: dependencies[index]) {
+        nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget(makeNodeName(nextIndex)).build());
+      }
+      bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+    }
+    Graph graph = new CompactGraph(bindingGraph.build());
+
+    // The loop can be left through 6 or directly to 7.
+    assertEquals(BigInteger.valueOf(2), GraphTraversal.countPaths(graph, 2, 7));
+    assertEquals(BigInteger.ONE, GraphTraversal.countPaths(graph, 1, 6));
+    assertEquals(BigInteger.ZERO, GraphTraversal.countPaths(graph, 7, 0));
+  }
+
+  @Test
+  public void testCountingPaths_WithLoopThroughTarget_StopsAtTarget() {
+    // 0 -> 1, 0 -> 2, 1 -> 2, 2 -> 0.
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    int[][] dependencies = {{1, 2}, {2}, {0}};
+    for (int index = 0; index < dependencies.length; index++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (int nextIndex: dependencies[index]) {
+        nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget(makeNodeName(nextIndex)).build());
+      }
+      bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+    }
+    Graph graph = new CompactGraph(bindingGraph.build());
+
+    // The edge 2 -> 0 leaves the target, so it doesn't join all nodes into a single loop.
+    assertEquals(BigInteger.valueOf(2), GraphTraversal.countPaths(graph, 0, 2));
+  }
+
+  @Test
+  public void testFindingNodesWithinDepth_InParallel_KeepsSequentialOrder() {
+    Random random = new Random(42);
+    int nodeCount = 20_000;
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    for (int index = 0; index < nodeCount; index++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (int edge = 0; edge < 3; edge++) {
+        nodeDeps.addDependency(
+            DependencyProto.Dependency.newBuilder().setTarget(makeNodeName(random.nextInt(nodeCount))).build());
+      }
+      bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+    }
+    Graph graph = new CompactGraph(bindingGraph.build());
+
+    for (GraphTraversal.Direction direction: GraphTraversal.Direction.values()) {
+      List<String> sequentialResult = new ArrayList<>();
+      GraphTraversal.forEachNodeWithinDepth(graph, new int[] {0}, Integer.MAX_VALUE, direction, Integer.MAX_VALUE,
+          (node, depth) -> sequentialResult.add(node + ":" + depth));
+
+      List<String> parallelResult = new ArrayList<>();
+      GraphTraversal.forEachNodeWithinDepth(graph, new int[] {0}, Integer.MAX_VALUE, direction, /*parallelLevelThreshold =*/ 1,
+          (node, depth) -> parallelResult.add(node + ":" + depth));
+
+      assertTrue(sequentialResult.size() > nodeCount / 2);
+      assertEquals(sequentialResult, parallelResult);
+    }
+  }
+
+  @Test
+  public void testFindingShortestPath_WithLoop() {
+    Graph graph = makeChain(6, /*withLoop =*/ true);
+
+    List<String> paths = new ArrayList<>();
+    GraphTraversal.PathVisitor visitor = (nodeIds, length) -> paths.add(Arrays.toString(Arrays.copyOf(nodeIds, length)));
+
+    assertTrue(GraphTraversal.findShortestPath(graph, 4, 1, visitor));
+    assertTrue(GraphTraversal.findShortestPath(graph, 1, 4, visitor));
+    assertTrue(GraphTraversal.findShortestPath(graph, 2, 3, visitor));
+
+    assertEquals(Arrays.asList("[4, 5, 0, 1]", "[1, 2, 3, 4]", "[2, 3]"), paths);
+  }
+
+  @Test
+  public void testFindingShortestPath_WithoutPath_ReturnsFalse() {
+    Graph graph = makeChain(4, /*withLoop =*/ false);
+
+    assertFalse(GraphTraversal.findShortestPath(graph, 3, 0, (nodeIds, length) -> true));
+    assertTrue(GraphTraversal.findShortestPath(graph, 0, 3, (nodeIds, length) -> true));
+  }
+
+  private static String makeNodeName(int index) {
+    return String.format("com.google.Node%06d", index);
+  }
+
+  /*
+   * Makes a binding graph where the node with index `i` depends on the node with index `i + 1`,
+   * node names are chosen so that node ids are equal to indexes.
+   */
+  private static Graph makeChain(int length, boolean withLoop) {
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    for (int index = 0; index < length; index++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder nodeDeps =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      if (index + 1 < length || withLoop) {
+        nodeDeps.addDependency(DependencyProto.Dependency.newBuilder().setTarget(makeNodeName((index + 1) % length)).build());
+      }
+      bindingGraph.putAdjacencyList(makeNodeName(index), nodeDeps.build());
+    }
+    return new CompactGraph(bindingGraph.build());
+  }
+}
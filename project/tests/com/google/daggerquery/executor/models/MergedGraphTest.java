@@ -0,0 +1,108 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import org.junit.Test;
+
+public class MergedGraphTest {
+
+  @Test
+  public void testGettingAllNodes_StoresSharedNodesOnce() {
+    MergedGraph graph = makeMergedGraph();
+
+    ImmutableList<String> expectedOutput = ImmutableList.of("com.google.Cat", "com.google.CatsFactory",
+        "com.google.DogComponent", "com.google.Helper", "com.google.KittenComponent");
+    assertEquals(expectedOutput, graph.getAllNodes().asList());
+    assertEquals(5, graph.getNodeCount());
+  }
+
+  @Test
+  public void testGettingDependencies_MergesEdgesOfAllComponents() {
+    MergedGraph graph = makeMergedGraph();
+
+    assertEquals(ImmutableSet.of("com.google.Cat", "com.google.Helper"), graph.getDependencies("com.google.CatsFactory"));
+    assertEquals(ImmutableList.of("com.google.CatsFactory", "com.google.DogComponent", "com.google.KittenComponent"),
+        graph.getAncestors("com.google.Helper").asList());
+    assertTrue(graph.getDependencies("com.google.Dog").isEmpty());
+  }
+
+  @Test
+  public void testGettingDependencies_StoresSharedEdgesOnce() {
+    MergedGraph graph = makeMergedGraph();
+
+    int factoryId = graph.getNodeId("com.google.CatsFactory");
+    assertEquals(2, graph.getDependencyCount(factoryId));
+    assertEquals(graph.getNodeId("com.google.Cat"), graph.getDependency(factoryId, 0));
+    assertEquals(graph.getNodeId("com.google.Helper"), graph.getDependency(factoryId, 1));
+    assertEquals(1, graph.getAncestorCount(graph.getNodeId("com.google.Cat")));
+  }
+
+  @Test
+  public void testExecutingQuery_OnMergedGraph() {
+    MergedGraph graph = makeMergedGraph();
+
+    Query query = new Query("rdeps", "com.google.Cat", "2");
+    ImmutableList<String> expectedOutput = ImmutableList.of("com.google.CatsFactory", "com.google.DogComponent",
+        "com.google.KittenComponent");
+    assertEquals(expectedOutput, ImmutableList.sortedCopyOf(query.execute(graph)));
+  }
+
+  /*
+   * Makes a merged graph of two components with the following structures:
+   *
+   * com.google.KittenComponent --> com.google.CatsFactory --> com.google.Cat
+   * com.google.KittenComponent --> com.google.Helper
+   *
+   * com.google.DogComponent --> com.google.CatsFactory --> com.google.Cat
+   * com.google.DogComponent --> com.google.Helper
+   * com.google.CatsFactory --> com.google.Helper
+   */
+  private MergedGraph makeMergedGraph() {
+    DependencyProto.Dependency factoryNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.CatsFactory").build();
+    DependencyProto.Dependency catNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.Cat").build();
+    DependencyProto.Dependency helperNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.Helper").build();
+
+    BindingGraphProto.BindingGraph.ListWithDependencies componentNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .addDependency(factoryNode)
+        .addDependency(helperNode)
+        .build();
+    BindingGraphProto.BindingGraph.ListWithDependencies kittenFactoryNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .addDependency(catNode)
+        .build();
+    BindingGraphProto.BindingGraph.ListWithDependencies dogFactoryNodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+        .addDependency(catNode)
+        .addDependency(helperNode)
+        .build();
+
+    BindingGraphProto.BindingGraph kittenGraph = BindingGraphProto.BindingGraph.newBuilder()
+        .putAdjacencyList("com.google.KittenComponent", componentNodeDeps)
+        .putAdjacencyList("com.google.CatsFactory", kittenFactoryNodeDeps)
+        .build();
+    BindingGraphProto.BindingGraph dogGraph = BindingGraphProto.BindingGraph.newBuilder()
+        .putAdjacencyList("com.google.DogComponent", componentNodeDeps)
+        .putAdjacencyList("com.google.CatsFactory", dogFactoryNodeDeps)
+        .build();
+    return new MergedGraph(ImmutableList.of(new CompactGraph(kittenGraph), new CompactGraph(dogGraph)));
+  }
+}
@@ -0,0 +1,67 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class NodeNameMatcherTest {
+
+  private static final ImmutableList<String> NODE_NAMES = ImmutableList.of(
+      "com.google.Cat",
+      "com.google.Car",
+      "com.google.CatsFactory",
+      "com.google.Cow",
+      "Cat",
+      "Dog",
+      "com.google.Provider[com.google.cats.CatsFactory]",
+      "com.google.Provider[com.google.dogs.DogsFactory]");
+
+  @Test
+  public void testFindingNodes_WithShortName_ReturnsNodesInOriginalOrder() {
+    NodeNameMatcher matcher = new NodeNameMatcher(NODE_NAMES);
+
+    assertEquals(ImmutableList.of("Cat", "Dog"), matcher.findNodesWithClosestName("Cow"));
+  }
+
+  @Test
+  public void testFindingNodes_WithOneTypo() {
+    NodeNameMatcher matcher = new NodeNameMatcher(NODE_NAMES);
+
+    assertEquals(ImmutableList.of("com.google.Cat", "com.google.Car", "com.google.Cow"),
+        matcher.findNodesWithClosestName("com.google.Caw"));
+  }
+
+  @Test
+  public void testFindingNodes_WithLongNameAndThreeTypos() {
+    NodeNameMatcher matcher = new NodeNameMatcher(NODE_NAMES);
+
+    assertEquals(ImmutableList.of("com.google.Provider[com.google.cats.CatsFactory]"),
+        matcher.findNodesWithClosestName("com.google.Provider[com.google.cat.CatFactry]"));
+  }
+
+  @Test
+  public void testFindingNodes_WithTooManyTypos_ReturnsEmptyList() {
+    NodeNameMatcher matcher = new NodeNameMatcher(NODE_NAMES);
+
+    assertTrue(matcher.findNodesWithClosestName("com.google.CatsFactory....").isEmpty());
+    assertTrue(matcher.findNodesWithClosestName("org.example.Elephant").isEmpty());
+  }
+}
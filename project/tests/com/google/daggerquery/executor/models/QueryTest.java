@@ -18,16 +18,22 @@ package com.google.daggerquery.executor.models;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
 import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import org.junit.Test;
@@ -39,6 +45,20 @@ public class QueryTest {
     Query query = new Query(/*typeName = */ null, "com.google.cats.Cat");
   }
 
+  @Test
+  public void testGettingKey_DependsOnNormalizedQuery() {
+    assertEquals(new Query("deps", "com.google.Cat").getKey(), new Query("DEPS", "com.google.Cat").getKey());
+  }
+
+  @Test
+  public void testGettingKey_WithSpacesInParameters_ReturnsDifferentKeys() {
+    Query firstQuery = new Query("somepath", "@Named(\"a b\") A", "B");
+    Query secondQuery = new Query("somepath", "@Named(\"a", "b\") A B");
+
+    assertEquals(firstQuery.toString(), secondQuery.toString());
+    assertNotEquals(firstQuery.getKey(), secondQuery.getKey());
+  }
+
   // Tests for `DEPS` query
 
   @Test(expected = IllegalArgumentException.class)
@@ -67,6 +87,38 @@ public class QueryTest {
     assertEquals(expectedOutput, ImmutableSet.copyOf(queryExecutionResult));
   }
 
+  @Test
+  public void testExecutingDepsQuery_WithDepth_ReturnsTransitiveDependenciesByLevels() {
+    String[] parameters = {"com.google.Helper", "2"};
+    Query query = new Query("deps", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    String[] expectedOutput = {"com.google.CatsFactory", "com.google.Cat"};
+    assertArrayEquals(expectedOutput, queryExecutionResult.toArray());
+  }
+
+  @Test
+  public void testExecutingRdepsQuery_WithDepth_ReturnsDepthOfEachAncestor() {
+    String[] parameters = {"com.google.Details", "100"};
+    Query query = new Query("rdeps", parameters);
+
+    Map<String, Integer> queryExecutionResult = query.executeWithDepths(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    ImmutableMap<String, Integer> expectedOutput = ImmutableMap.of(
+        "com.google.Cat", 1,
+        "com.google.Component", 1,
+        "com.google.CatsFactory", 2,
+        "com.google.Helper", 3);
+    assertEquals(expectedOutput, queryExecutionResult);
+    assertEquals(expectedOutput.keySet().asList(), Lists.newArrayList(queryExecutionResult.keySet()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParsingDepsQuery_WithZeroDepth_ThrowsIllegalArgumentException() {
+    Query query = new Query("deps", "com.google.cats.Cat", "0");
+  }
+
   @Test
   public void testExecutingDepsQuery_WithCapitalizedName_WithComponentSourceNode() {
     String[] parameters = {"com.google.Component"};
@@ -271,6 +323,82 @@ public class QueryTest {
     Query query = new Query("somepath", /*parameters = */ null);
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testExecutingAllPathsQuery_WithTooManyPaths_ThrowsIllegalArgumentException() {
+    // A path passes through either the left or the right node of each of 14 middle levels, so there are 2^14 paths.
+    BindingGraphProto.BindingGraph.Builder bindingGraph = BindingGraphProto.BindingGraph.newBuilder();
+    for (int level = 0; level < 15; level++) {
+      BindingGraphProto.BindingGraph.ListWithDependencies nodeDeps = BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+          .addDependency(DependencyProto.Dependency.newBuilder().setTarget("com.google.Left" + (level + 1)).build())
+          .addDependency(DependencyProto.Dependency.newBuilder().setTarget("com.google.Right" + (level + 1)).build())
+          .build();
+      bindingGraph.putAdjacencyList("com.google.Left" + level, nodeDeps);
+      bindingGraph.putAdjacencyList("com.google.Right" + level, nodeDeps);
+    }
+
+    Query query = new Query("allpaths", "com.google.Left0", "com.google.Left15");
+    query.execute(new CompactGraph(bindingGraph.build()));
+  }
+
+  @Test
+  public void testExecutingAllPathsGraphQuery_ReturnsEdgesOnPaths() {
+    String[] parameters = {"com.google.Helper", "com.google.Details"};
+    Query query = new Query("allpathsgraph", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    String[] expectedOutput = {
+        "com.google.Helper -> com.google.CatsFactory",
+        "com.google.CatsFactory -> com.google.Cat",
+        "com.google.Cat -> com.google.Details"
+    };
+    assertArrayEquals(expectedOutput, queryExecutionResult.toArray());
+  }
+
+  @Test
+  public void testExecutingAllPathsGraphQuery_SkipsEdgesNotLeadingToTarget() {
+    String[] parameters = {"com.google.Component", "com.google.Cat"};
+    Query query = new Query("allpathsgraph", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    Set<String> expectedOutput = Sets.newHashSet(
+        "com.google.Component -> com.google.CatsFactory",
+        "com.google.Component -> com.google.Helper",
+        "com.google.Component -> com.google.Cat",
+        "com.google.Helper -> com.google.CatsFactory",
+        "com.google.CatsFactory -> com.google.Cat"
+    );
+    assertEquals(expectedOutput.size(), queryExecutionResult.size());
+    assertEquals(expectedOutput, Sets.newHashSet(queryExecutionResult));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testExecutingAllPathsGraphQuery_WhenThereIsNoPaths_ThrowsNoSuchElementException() {
+    String[] parameters = {"com.google.CatsFactory", "com.google.Helper"};
+    Query query = new Query("allpathsgraph", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+  }
+
+  @Test
+  public void testExecutingCountPathsQuery() {
+    String[] parameters = {"com.google.Component", "com.google.Details"};
+    Query query = new Query("countpaths", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    assertArrayEquals(new String[] {"4"}, queryExecutionResult.toArray());
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testExecutingCountPathsQuery_WhenThereIsNoPaths_ThrowsNoSuchElementException() {
+    String[] parameters = {"com.google.CatsFactory", "com.google.Helper"};
+    Query query = new Query("countpaths", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+  }
+
   @Test
   public void testExecutingSomePathQuery_WithCapitalizedName_WhenResultContainsOnePathWithTwoNodes() {
     String[] parameters = {"com.google.Cat", "com.google.Details"};
@@ -312,6 +440,22 @@ public class QueryTest {
     assertTrue(possibleOutputs.contains(queryExecutionResult.get(0)));
   }
 
+  @Test
+  public void testExecutingSomePathQuery_WhenResultContainsMultiplePaths_ReturnsShortestPath() {
+    String[] parameters = {"com.google.Helper", "com.google.Details"};
+    Query query = new Query("somepath", parameters);
+
+    List<String> queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    String[] expectedOutput = {"com.google.Helper -> com.google.CatsFactory -> com.google.Cat -> com.google.Details"};
+    assertArrayEquals(expectedOutput, queryExecutionResult.toArray());
+
+    query = new Query("somepath", "com.google.Component", "com.google.Details");
+    queryExecutionResult = query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+
+    assertArrayEquals(new String[] {"com.google.Component -> com.google.Details"}, queryExecutionResult.toArray());
+  }
+
   @Test(expected = NoSuchElementException.class)
   public void testExecutingSomePathQuery_WithLeafAsSourceNode_ThrowsNoSuchElementException() {
     String[] parameters = {"com.google.Details", "com.google.Component"};
@@ -468,6 +612,85 @@ public class QueryTest {
     List<String> queryExecutionResult = query.execute(makeSimpleBindingGraph());
   }
 
+  // Tests for source patterns of `DEPS` and `RDEPS` queries
+
+  @Test
+  public void testExecutingDepsQuery_WithPattern_ReturnsMatchingNodesWhichAreDependencies() {
+    Query query = new Query("deps", "com.google.Cat*");
+
+    assertTrue(query.hasSourcePattern());
+    assertEquals(Arrays.asList("com.google.Details", "com.google.Cat"),
+        query.execute(makeBindingGraph_WithMultiplePathsBetweenTwoNodes()));
+  }
+
+  @Test
+  public void testExecutingRdepsQuery_WithPatternAndDepth() {
+    Query query = new Query("rdeps", "com.google.Cat*", "2");
+
+    ImmutableMap<String, Integer> expectedOutput =
+        ImmutableMap.of("com.google.CatsFactory", 1, "com.google.Component", 1, "com.google.Helper", 1);
+    assertEquals(expectedOutput, query.executeWithDepths(makeBindingGraph_WithMultiplePathsBetweenTwoNodes()));
+  }
+
+  @Test
+  public void testExecutingDepsQuery_WithPatternMatchingAllNodes_ReturnsAllDependencies() {
+    Query query = new Query("deps", "*");
+
+    assertTrue(query.hasSourcePattern());
+    assertEquals(Arrays.asList("com.google.Cat", "com.google.CatsFactory", "com.google.Helper"),
+        query.execute(makeSimpleBindingGraph()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testExecutingDepsQuery_WithPatternMatchingNothing_ThrowsIllegalArgumentException() {
+    new Query("deps", "com.google.Dog*").execute(makeSimpleBindingGraph());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParsingDepsQuery_WithWildcardInTheMiddle_ThrowsIllegalArgumentException() {
+    new Query("deps", "com.google.*Factory");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParsingSomePathQuery_WithPattern_ThrowsIllegalArgumentException() {
+    new Query("somepath", "com.google.*", "com.google.Cat");
+  }
+
+  // Tests for lazy results of `DEPS`, `RDEPS` and `ALLPATHSGRAPH` queries
+
+  @Test
+  public void testFindingResultsLazily_ReturnsSameResultsAsExecutingQuery() {
+    Graph bindingGraph = makeBindingGraph_WithMultiplePathsBetweenTwoNodes();
+
+    for (Query query: Arrays.asList(new Query("deps", "com.google.Component", "2"),
+        new Query("rdeps", "com.google.Details"), new Query("deps", "com.google.C*"),
+        new Query("allpathsgraph", "com.google.Helper", "com.google.Details"))) {
+      assertTrue(query.hasLazyResults());
+      query.checkHasResults(bindingGraph);
+
+      List<String> lazyResults = new ArrayList<>();
+      query.forEachResult(bindingGraph, lazyResults::add);
+
+      assertEquals(query.execute(bindingGraph), lazyResults);
+    }
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testCheckingResults_WithLeafAsSourceNode_ThrowsNoSuchElementException() {
+    new Query("deps", "com.google.Cat").checkHasResults(makeSimpleBindingGraph());
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testCheckingResults_WithoutPathsBetweenNodes_ThrowsNoSuchElementException() {
+    new Query("allpathsgraph", "com.google.Details", "com.google.Component")
+        .checkHasResults(makeBindingGraph_WithMultiplePathsBetweenTwoNodes());
+  }
+
+  @Test
+  public void testCheckingResults_WithPathQuery_HasNoLazyResults() {
+    assertFalse(new Query("allpaths", "com.google.Component", "com.google.Details").hasLazyResults());
+  }
+
   // Tests for `EXISTS` query
 
   @Test(expected = IllegalArgumentException.class)
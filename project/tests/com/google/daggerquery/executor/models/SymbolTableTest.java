@@ -0,0 +1,101 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.models;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+  @Test
+  public void testGettingNamesAndIds_WithSharedPrefixes() {
+    ImmutableList<String> names = ImmutableList.of("com.google.Cat", "com.google.CatsFactory",
+        "com.google.Component", "com.google.Foo<com.google.Bar>", "org.Dog");
+    SymbolTable symbolTable = new SymbolTable(names);
+
+    assertEquals(5, symbolTable.size());
+    for (int id = 0; id < names.size(); id++) {
+      assertEquals(names.get(id), symbolTable.getName(id));
+      assertEquals(id, symbolTable.getId(names.get(id)));
+    }
+    assertEquals(names, symbolTable.getAllNames().asList());
+  }
+
+  @Test
+  public void testGettingId_OfMissingNames_ReturnsMinusOne() {
+    SymbolTable symbolTable = new SymbolTable(ImmutableList.of("com.google.Cat", "com.google.Dog"));
+
+    assertEquals(-1, symbolTable.getId("com.google.Ca"));
+    assertEquals(-1, symbolTable.getId("a"));
+    assertEquals(-1, symbolTable.getId("com.google.Cow"));
+    assertEquals(-1, symbolTable.getId("z"));
+    assertEquals(-1, new SymbolTable(ImmutableList.of()).getId("com.google.Cat"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreatingTable_WithUnsortedNames_ThrowsException() {
+    new SymbolTable(ImmutableList.of("com.google.Dog", "com.google.Cat"));
+  }
+
+  @Test
+  public void testGettingNamesAndIds_WithManyBlocks() {
+    Random random = new Random(42);
+    TreeSet<String> names = new TreeSet<>();
+    while (names.size() < 1000) {
+      StringBuilder name = new StringBuilder("com.google.");
+      int length = 1 + random.nextInt(200);
+      for (int index = 0; index < length; index++) {
+        // Non-ASCII letters check that prefixes split in the middle of a character are restored correctly.
+        name.append(random.nextInt(10) == 0 ? '\u00e9' : (char) ('a' + random.nextInt(3)));
+      }
+      names.add(name.toString());
+    }
+
+    SymbolTable symbolTable = new SymbolTable(names);
+    ImmutableList<String> sortedNames = ImmutableList.copyOf(names);
+    for (int id = 0; id < sortedNames.size(); id++) {
+      assertEquals(sortedNames.get(id), symbolTable.getName(id));
+      assertEquals(id, symbolTable.getId(sortedNames.get(id)));
+      assertEquals(-1, symbolTable.getId(sortedNames.get(id) + "x"));
+
+      String prefix = sortedNames.get(id).substring(0, sortedNames.get(id).length() - 1);
+      assertEquals(names.contains(prefix) ? names.headSet(prefix).size() : -1, symbolTable.getId(prefix));
+    }
+    assertEquals(ImmutableSortedSet.copyOf(names), symbolTable.getAllNames());
+  }
+
+  @Test
+  public void testGettingIds_WhenNamesAreNotSortedAsBytes() {
+    // A supplementary character goes before U+FFE9 in strings, but after it in UTF-8.
+    TreeSet<String> names = new TreeSet<>();
+    for (int index = 0; index < 40; index++) {
+      names.add("com.google." + (char) ('a' + index % 20) + (index < 20 ? "\ud83d\ude00" : "\uffe9"));
+    }
+
+    SymbolTable symbolTable = new SymbolTable(names);
+    ImmutableList<String> sortedNames = ImmutableList.copyOf(names);
+    for (int id = 0; id < sortedNames.size(); id++) {
+      assertEquals(id, symbolTable.getId(sortedNames.get(id)));
+    }
+    assertEquals(-1, symbolTable.getId("com.google.a"));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.daggerquery.executor.models.CompactGraph;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class GraphFileTest {
+
+  @Test
+  public void testMappingGraphFile_ReturnsSameGraphs() throws IOException {
+    Graph firstGraph = makeBindingGraph("com.google.Component", "com.google.CatsFactory", "com.google.Cat");
+    Graph secondGraph = makeBindingGraph("com.google.Zoo", "com.google.\u041a\u043e\u0442", "com.google.Cat");
+
+    Path file = Files.createTempFile("binding_graphs", ".graph");
+    try {
+      GraphFile.write(Arrays.asList(firstGraph, secondGraph), file);
+      ImmutableList<Graph> mappedGraphs = GraphFile.map(file);
+
+      assertEquals(2, mappedGraphs.size());
+      assertSameGraphs(firstGraph, mappedGraphs.get(0));
+      assertSameGraphs(secondGraph, mappedGraphs.get(1));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testMappingGraphFile_WithNonAsciiNames_FindsNodesLikeCompactGraph() throws IOException {
+    Graph graph = makeBindingGraph("com.google.\uD83D\uDC31", "com.google.\uFF21", "com.google.\u00E9");
+
+    Path file = Files.createTempFile("binding_graphs", ".graph");
+    try {
+      GraphFile.write(Arrays.asList(graph), file);
+      Graph mappedGraph = GraphFile.map(file).get(0);
+
+      assertSameGraphs(graph, mappedGraph);
+      for (String node: Arrays.asList("com.google.", "com.google.\uD83D", "com.google.\uFF21A", "com.google.\uFFFF")) {
+        assertEquals(-1, mappedGraph.getNodeId(node));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMappingGraphFile_WithInvalidFile_ThrowsIOException() throws IOException {
+    Path file = Files.createTempFile("binding_graphs", ".graph");
+    try {
+      Files.write(file, "not a graph".getBytes());
+      GraphFile.map(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private void assertSameGraphs(Graph expectedGraph, Graph actualGraph) {
+    assertEquals(expectedGraph.getNodeCount(), actualGraph.getNodeCount());
+    assertEquals(expectedGraph.getAllNodes(), actualGraph.getAllNodes());
+
+    for (String node: expectedGraph.getAllNodes()) {
+      assertTrue(actualGraph.containsNode(node));
+      assertEquals(expectedGraph.getNodeId(node), actualGraph.getNodeId(node));
+      assertEquals(expectedGraph.getDependencies(node), actualGraph.getDependencies(node));
+      assertEquals(expectedGraph.getAncestors(node), actualGraph.getAncestors(node));
+    }
+
+    assertFalse(actualGraph.containsNode("com.google.Kitten"));
+  }
+
+  /*
+   * Makes a binding graph with the following structure:
+   *
+   * root --> middle --> leaf
+   * root --> leaf
+   */
+  private Graph makeBindingGraph(String root, String middle, String leaf) {
+    DependencyProto.Dependency middleNode = DependencyProto.Dependency.newBuilder().setTarget(middle).build();
+    DependencyProto.Dependency leafNode = DependencyProto.Dependency.newBuilder().setTarget(leaf).build();
+
+    BindingGraphProto.BindingGraph bindingGraph = BindingGraphProto.BindingGraph.newBuilder()
+        .putAdjacencyList(root, BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+            .addDependency(middleNode)
+            .addDependency(leafNode)
+            .build())
+        .putAdjacencyList(middle, BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+            .addDependency(leafNode)
+            .build())
+        .putAdjacencyList(leaf, BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().build())
+        .build();
+    return new CompactGraph(bindingGraph);
+  }
+}
@@ -0,0 +1,105 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class GraphRepositoryTest {
+
+  @Test
+  public void testGettingGraphs_LoadsBindingGraphsOnlyOnce() throws IOException {
+    CountingSourcesLoader sourcesLoader = new CountingSourcesLoader(/*isMissing =*/ false);
+    GraphRepository graphRepository = new GraphRepository(sourcesLoader);
+
+    ImmutableList<Graph> firstGraphs = graphRepository.getGraphs();
+    ImmutableList<Graph> secondGraphs = graphRepository.getGraphs();
+
+    assertSame(firstGraphs, secondGraphs);
+    assertEquals(1, sourcesLoader.numberOfLoads);
+    assertEquals(ImmutableSet.of("com.google.CatsFactory"), firstGraphs.get(0).getDependencies("com.google.Component"));
+  }
+
+  @Test
+  public void testGettingGraphs_WhenSourcesAreMissing_TriesToLoadThemAgain() {
+    CountingSourcesLoader sourcesLoader = new CountingSourcesLoader(/*isMissing =*/ true);
+    GraphRepository graphRepository = new GraphRepository(sourcesLoader);
+
+    for (int attempt = 0; attempt < 2; attempt++) {
+      try {
+        graphRepository.getGraphs();
+        fail();
+      } catch (IOException e) {
+        // Expected, the next call should try to load graphs again.
+      }
+    }
+
+    assertEquals(2, sourcesLoader.numberOfLoads);
+  }
+
+  @Test
+  public void testGettingSnapshotHash_WithSameGraphs_ReturnsSameHash() throws IOException {
+    GraphRepository firstGraphRepository = new GraphRepository(new CountingSourcesLoader(/*isMissing =*/ false));
+    GraphRepository secondGraphRepository = new GraphRepository(new CountingSourcesLoader(/*isMissing =*/ false));
+
+    assertEquals(firstGraphRepository.getSnapshotHash(), secondGraphRepository.getSnapshotHash());
+    assertNotEquals(firstGraphRepository.getSnapshotId(), secondGraphRepository.getSnapshotId());
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns a single graph com.google.Component --> com.google.CatsFactory
+   * and counts the number of loads.
+   */
+  private static class CountingSourcesLoader extends SourcesLoader {
+    private final boolean isMissing;
+    private int numberOfLoads = 0;
+
+    CountingSourcesLoader(boolean isMissing) {
+      this.isMissing = isMissing;
+    }
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() throws IOException {
+      numberOfLoads++;
+      if (isMissing) {
+        throw new FileNotFoundException("File is missing.");
+      }
+
+      DependencyProto.Dependency factoryNode = DependencyProto.Dependency.newBuilder().setTarget("com.google.CatsFactory").build();
+      BindingGraphProto.BindingGraph bindingGraph = BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component",
+              BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().addDependency(factoryNode).build())
+          .putAdjacencyList("com.google.CatsFactory",
+              BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().build())
+          .build();
+      return Collections.singletonList(bindingGraph);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.executor.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.daggerquery.executor.models.CompactGraph;
+import com.google.daggerquery.executor.models.Graph;
+import com.google.daggerquery.executor.models.MisspelledNodeNameException;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class NodeLookupTest {
+
+  @Test
+  public void testGettingGraphsContainingNode() {
+    NodeLookup nodeLookup = new NodeLookup(Arrays.asList(
+        makeBindingGraph("com.google.CatsComponent", "com.google.Cat"),
+        makeBindingGraph("com.google.DogsComponent", "com.google.Dog"),
+        makeBindingGraph("com.google.PetsComponent", "com.google.Cat")));
+
+    assertArrayEquals(new int[] {0, 2}, nodeLookup.getGraphsContainingNode("com.google.Cat"));
+    assertArrayEquals(new int[] {1}, nodeLookup.getGraphsContainingNode("com.google.DogsComponent"));
+    assertArrayEquals(new int[0], nodeLookup.getGraphsContainingNode("com.google.Kitten"));
+  }
+
+  @Test
+  public void testGettingGraphsContainingNode_ReturnsNewArrayOnEachCall() {
+    NodeLookup nodeLookup = new NodeLookup(Arrays.asList(
+        makeBindingGraph("com.google.CatsComponent", "com.google.Cat"),
+        makeBindingGraph("com.google.PetsComponent", "com.google.Cat")));
+
+    nodeLookup.getGraphsContainingNode("com.google.Cat")[0] = 1;
+
+    assertArrayEquals(new int[] {0, 1}, nodeLookup.getGraphsContainingNode("com.google.Cat"));
+  }
+
+  @Test
+  public void testMatchingNodeNames_FindsNamesFromAllGraphs() {
+    NodeLookup nodeLookup = new NodeLookup(Arrays.asList(
+        makeBindingGraph("com.google.CatsComponent", "com.google.Cat"),
+        makeBindingGraph("com.google.DogsComponent", "com.google.Dog")));
+
+    assertEquals(ImmutableList.of("com.google.Cat", "com.google.Dog"),
+        ImmutableList.sortedCopyOf(nodeLookup.getNodeNameMatcher().findNodesWithClosestName("com.google.Cow")));
+    assertTrue(nodeLookup.getNodeNameMatcher().makeNodeNotFoundException("com.google.Cow")
+        instanceof MisspelledNodeNameException);
+    assertTrue(nodeLookup.getNodeNameMatcher().makeNodeNotFoundException("com.example.Elephant")
+        instanceof IllegalArgumentException);
+  }
+
+  /*
+   * Makes a binding graph with a single edge: component --> node.
+   */
+  private Graph makeBindingGraph(String component, String node) {
+    DependencyProto.Dependency dependency = DependencyProto.Dependency.newBuilder().setTarget(node).build();
+
+    BindingGraphProto.BindingGraph bindingGraph = BindingGraphProto.BindingGraph.newBuilder()
+        .putAdjacencyList(component, BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder()
+            .addDependency(dependency)
+            .build())
+        .putAdjacencyList(node, BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder().build())
+        .build();
+    return new CompactGraph(bindingGraph);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.server;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+
+public class ContentEncodingTest {
+
+  @Test
+  public void testNegotiatingEncoding_PrefersGzip() {
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip, br"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("br, DEFLATE"));
+  }
+
+  @Test
+  public void testNegotiatingEncoding_WithZeroQuality_SkipsEncoding() {
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, deflate;q=0.5"));
+    assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("*, gzip; q=0.0"));
+    assertNull(ContentEncoding.negotiate("*;q=0"));
+  }
+
+  @Test
+  public void testNegotiatingEncoding_WithoutAcceptedEncodings_ReturnsNull() {
+    assertNull(ContentEncoding.negotiate(null));
+    assertNull(ContentEncoding.negotiate("identity, br"));
+  }
+
+  @Test
+  public void testFlushingEncodedStream_WritesAllDataBeforeClosing() throws IOException {
+    byte[] data = "[\"com.google.Cat\",\"com.google.Dog\"".getBytes(UTF_8);
+    for (ContentEncoding encoding: ContentEncoding.values()) {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      OutputStream encodedBody = encoding.wrap(body);
+      encodedBody.write(data);
+      encodedBody.flush();
+
+      byte[] decodedData = new byte[data.length];
+      new DataInputStream(decode(encoding, new ByteArrayInputStream(body.toByteArray()))).readFully(decodedData);
+      assertArrayEquals(data, decodedData);
+    }
+  }
+
+  private static InputStream decode(ContentEncoding encoding, InputStream inputStream) throws IOException {
+    return encoding == ContentEncoding.GZIP ? new GZIPInputStream(inputStream) : new InflaterInputStream(inputStream);
+  }
+}
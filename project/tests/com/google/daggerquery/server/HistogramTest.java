@@ -0,0 +1,55 @@
+/*
+Copyright 2020 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    https://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package com.google.daggerquery.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void testWritingHistogram_WritesCumulativeBuckets() {
+    Histogram histogram = new Histogram(1, 10);
+    histogram.observe(0.5);
+    histogram.observe(1);
+    histogram.observe(5);
+    histogram.observe(20);
+
+    StringBuilder output = new StringBuilder();
+    histogram.writeTo(output, "latency", "query=\"deps\"");
+
+    assertEquals(
+        "latency_bucket{query=\"deps\",le=\"1.0\"} 2\n"
+            + "latency_bucket{query=\"deps\",le=\"10.0\"} 3\n"
+            + "latency_bucket{query=\"deps\",le=\"+Inf\"} 4\n"
+            + "latency_sum{query=\"deps\"} 26.5\n"
+            + "latency_count{query=\"deps\"} 4\n",
+        output.toString());
+  }
+
+  @Test
+  public void testWritingHistogram_WithoutLabels_WritesSamplesWithoutBraces() {
+    Histogram histogram = new Histogram(1);
+
+    StringBuilder output = new StringBuilder();
+    histogram.writeTo(output, "size", "");
+
+    assertEquals("size_bucket{le=\"1.0\"} 0\nsize_bucket{le=\"+Inf\"} 0\nsize_sum 0.0\nsize_count 0\n",
+        output.toString());
+  }
+}
@@ -16,43 +16,58 @@ limitations under the License.
 
 package com.google.daggerquery.server;
 
+import com.google.common.io.ByteStreams;
+import com.google.daggerquery.executor.services.GraphRepository;
+import com.google.daggerquery.executor.services.SourcesLoader;
+import com.google.daggerquery.protobuf.autogen.BindingGraphProto;
+import com.google.daggerquery.protobuf.autogen.DependencyProto;
 import org.apache.http.client.utils.URIBuilder;
-import org.junit.AfterClass;
-import org.junit.BeforeClass;
+import org.junit.After;
 import org.junit.Test;
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ServerTest {
 
-  private static URIBuilder uriBuilder;
-
-  @BeforeClass
-  public static void startServer() {
-    // We can pass null since these arguments are not used.
-    Server.main(/*args =*/ null);
-
-    uriBuilder = new URIBuilder()
-      .setScheme("http")
-      .setHost(Server.HOST)
-      .setPort(Server.PORT)
-      .setPath(Server.PATH);
+  @After
+  public void stopServer() {
+    Server.stop();
+    System.clearProperty(Server.QUERY_THREADS_PROPERTY);
+    System.clearProperty(Server.QUERY_QUEUE_SIZE_PROPERTY);
   }
 
   @Test
   public void testExecutingQuery_WhenGraphNotFound_Returns404StatusCode() {
+    // We can pass null since these arguments are not used.
+    Server.main(/*args =*/ null);
+
     try {
-      URL url = uriBuilder
-        .addParameter("query", "deps com.google.Cat")
-        .build()
-        .toURL();
+      URL url = makeQueryUrl("deps com.google.Cat");
 
       HttpURLConnection connection = (HttpURLConnection) url.openConnection();
       int statusCode = connection.getResponseCode();
@@ -67,8 +82,283 @@ public class ServerTest {
     }
   }
 
-  @AfterClass
-  public static void stopServer() {
-    Server.stop();
+  @Test
+  public void testExecutingQuery_ExecutesQueryOnWorkerThread() throws Exception {
+    MissingSourcesLoader sourcesLoader = new MissingSourcesLoader(/*blockedAttempts =*/ 0);
+    Server.start(new GraphRepository(sourcesLoader));
+
+    HttpURLConnection connection = (HttpURLConnection) makeQueryUrl("deps com.google.Cat").openConnection();
+
+    assertEquals(404, connection.getResponseCode());
+    assertEquals(2, sourcesLoader.loadingThreads.size());
+    assertTrue(sourcesLoader.loadingThreads.get(1).startsWith("query-worker-"));
+  }
+
+  @Test
+  public void testExecutingQuery_WhenWorkersAreOverloaded_Returns503StatusCode() throws Exception {
+    System.setProperty(Server.QUERY_THREADS_PROPERTY, "1");
+    System.setProperty(Server.QUERY_QUEUE_SIZE_PROPERTY, "1");
+    MissingSourcesLoader sourcesLoader = new MissingSourcesLoader(/*blockedAttempts =*/ 2);
+    Server.start(new GraphRepository(sourcesLoader));
+
+    // The first query occupies the only worker and the second one occupies the queue, so the third one is rejected.
+    ExecutorService clients = Executors.newFixedThreadPool(3);
+    try {
+      CompletionService<Integer> statusCodes = new ExecutorCompletionService<>(clients);
+      for (int index = 0; index < 3; index++) {
+        statusCodes.submit(() -> ((HttpURLConnection) makeQueryUrl("deps com.google.Cat").openConnection())
+            .getResponseCode());
+      }
+
+      Future<Integer> firstStatusCode = statusCodes.poll(10, TimeUnit.SECONDS);
+      assertNotNull(firstStatusCode);
+      assertEquals(503, (int) firstStatusCode.get());
+
+      sourcesLoader.release.countDown();
+      assertEquals(404, (int) statusCodes.take().get());
+      assertEquals(404, (int) statusCodes.take().get());
+    } finally {
+      sourcesLoader.release.countDown();
+      clients.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecutingQuery_StreamsResultsWithChunkedEncoding() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1000)));
+
+    HttpURLConnection connection = (HttpURLConnection) makeQueryUrl("deps com.google.Component").openConnection();
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+    assertEquals("application/json", connection.getHeaderField("Content-Type"));
+    assertEquals(makeJsonArray(ComponentSourcesLoader.makeDependencies(1000)),
+        new String(ByteStreams.toByteArray(connection.getInputStream()), UTF_8));
+  }
+
+  @Test
+  public void testExecutingQuery_WithMatchingEntityTag_Returns304StatusCode() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    HttpURLConnection connection = (HttpURLConnection) makeQueryUrl("deps com.google.Component").openConnection();
+    assertEquals(200, connection.getResponseCode());
+    String entityTag = connection.getHeaderField("ETag");
+    assertTrue(entityTag.startsWith("W/\""));
+    connection.getInputStream().close();
+
+    HttpURLConnection conditionalConnection =
+        (HttpURLConnection) makeQueryUrl("DEPS com.google.Component").openConnection();
+    conditionalConnection.setRequestProperty("If-None-Match", "\"other\", " + entityTag);
+
+    assertEquals(304, conditionalConnection.getResponseCode());
+    assertEquals(entityTag, conditionalConnection.getHeaderField("ETag"));
+  }
+
+  @Test
+  public void testExecutingQuery_WithAnyEntityTag_WhenNodeIsMissing_Returns400StatusCode() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    HttpURLConnection connection = (HttpURLConnection) makeQueryUrl("deps com.example.Kitten").openConnection();
+    connection.setRequestProperty("If-None-Match", "*");
+
+    assertEquals(400, connection.getResponseCode());
+  }
+
+  @Test
+  public void testExecutingQuery_WhenClientAcceptsGzip_CompressesResults() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1000)));
+
+    HttpURLConnection connection = (HttpURLConnection) makeQueryUrl("deps com.google.Component").openConnection();
+    connection.setRequestProperty("Accept-Encoding", "br, gzip");
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+    assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+    assertEquals(makeJsonArray(ComponentSourcesLoader.makeDependencies(1000)),
+        new String(ByteStreams.toByteArray(new GZIPInputStream(connection.getInputStream())), UTF_8));
+  }
+
+  @Test
+  public void testExecutingBatch_ReturnsResultOrErrorForEachQuery() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    HttpURLConnection connection =
+        postBatch("[\"deps com.google.Component\", \"paths com.google.Component\", \"DEPS com.google.Component\"]");
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("["
+            + "{\"query\":\"deps com.google.Component\",\"results\":[\"com.google.Dependency0000\"]},"
+            + "{\"query\":\"paths com.google.Component\","
+            + "\"error\":\"Execution failed. Reason: Query with name \\\"paths\\\" isn't supported.\"},"
+            + "{\"query\":\"DEPS com.google.Component\",\"results\":[\"com.google.Dependency0000\"]}]",
+        new String(ByteStreams.toByteArray(connection.getInputStream()), UTF_8));
+  }
+
+  @Test
+  public void testExecutingBatch_ExecutesEqualQueriesOnce() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    HttpURLConnection connection = postBatch("[\"deps com.google.Component\", \"DEPS com.google.Component\"]");
+    assertEquals(200, connection.getResponseCode());
+    connection.getInputStream().close();
+
+    String metrics = new String(ByteStreams.toByteArray(makeMetricsUrl().openStream()), UTF_8);
+    assertTrue(metrics.contains("daggerquery_cache_hits_total 0\n"));
+    assertTrue(metrics.contains("daggerquery_cache_misses_total 1\n"));
+  }
+
+  @Test
+  public void testExecutingBatch_WithMalformedJson_Returns400StatusCode() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    assertEquals(400, postBatch("[\"deps com.google.Component\"").getResponseCode());
+    assertEquals(400, postBatch("{\"query\": \"deps com.google.Component\"}").getResponseCode());
+  }
+
+  @Test
+  public void testExecutingBatch_WithTooManyQueries_Returns400StatusCode() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    List<String> queries = Collections.nCopies(Server.MAX_BATCH_SIZE + 1, "deps com.google.Component");
+    HttpURLConnection connection = postBatch(makeJsonArray(queries));
+
+    assertEquals(400, connection.getResponseCode());
+    assertEquals("Execution failed. Reason: A batch may contain at most " + Server.MAX_BATCH_SIZE + " queries.",
+        new String(ByteStreams.toByteArray(connection.getErrorStream()), UTF_8));
+  }
+
+  @Test
+  public void testGettingMetrics_ReturnsPrometheusTextFormat() throws Exception {
+    Server.start(new GraphRepository(new ComponentSourcesLoader(/*numberOfDependencies =*/ 1)));
+
+    HttpURLConnection queryConnection = (HttpURLConnection) makeQueryUrl("deps com.google.Component").openConnection();
+    assertEquals(200, queryConnection.getResponseCode());
+    queryConnection.getInputStream().close();
+    HttpURLConnection batchConnection = postBatch("[\"allpaths com.google.Component com.google.Dependency0000\"]");
+    assertEquals(200, batchConnection.getResponseCode());
+    batchConnection.getInputStream().close();
+
+    HttpURLConnection connection = (HttpURLConnection) makeMetricsUrl().openConnection();
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("text/plain; version=0.0.4; charset=utf-8", connection.getHeaderField("Content-Type"));
+
+    String metrics = new String(ByteStreams.toByteArray(connection.getInputStream()), UTF_8);
+    assertTrue(metrics.contains("# TYPE daggerquery_query_seconds histogram\n"));
+    assertTrue(metrics.contains("daggerquery_query_seconds_bucket{query=\"deps\",le=\"+Inf\"} "));
+    assertTrue(metrics.contains("daggerquery_query_seconds_count{query=\"allpaths\"} 1\n"));
+    assertTrue(metrics.contains("daggerquery_stage_seconds_count{stage=\"hash_graphs\"} "));
+    assertTrue(metrics.contains("daggerquery_requests_total{status=\"200\"} "));
+    assertTrue(metrics.contains("daggerquery_response_bytes_count "));
+  }
+
+  private static URL makeQueryUrl(String query) throws URISyntaxException, IOException {
+    return new URIBuilder()
+      .setScheme("http")
+      .setHost(Server.HOST)
+      .setPort(Server.PORT)
+      .setPath(Server.PATH)
+      .addParameter("query", query)
+      .build()
+      .toURL();
+  }
+
+  private static URL makeMetricsUrl() throws URISyntaxException, IOException {
+    return new URIBuilder()
+      .setScheme("http")
+      .setHost(Server.HOST)
+      .setPort(Server.PORT)
+      .setPath(Server.METRICS_PATH)
+      .build()
+      .toURL();
+  }
+
+  private static HttpURLConnection postBatch(String body) throws URISyntaxException, IOException {
+    URL url = new URIBuilder()
+      .setScheme("http")
+      .setHost(Server.HOST)
+      .setPort(Server.PORT)
+      .setPath(Server.BATCH_PATH)
+      .build()
+      .toURL();
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
+    try (OutputStream outputStream = connection.getOutputStream()) {
+      outputStream.write(body.getBytes(UTF_8));
+    }
+    return connection;
+  }
+
+  private static String makeJsonArray(List<String> values) {
+    StringJoiner joiner = new StringJoiner("\",\"", "[\"", "\"]");
+    values.forEach(joiner::add);
+    return joiner.toString();
+  }
+
+  /**
+   * A {@link SourcesLoader} which returns a single graph with com.google.Component, which depends on
+   * the given number of nodes.
+   */
+  private static class ComponentSourcesLoader extends SourcesLoader {
+    private final int numberOfDependencies;
+
+    ComponentSourcesLoader(int numberOfDependencies) {
+      this.numberOfDependencies = numberOfDependencies;
+    }
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() {
+      BindingGraphProto.BindingGraph.ListWithDependencies.Builder dependencies =
+          BindingGraphProto.BindingGraph.ListWithDependencies.newBuilder();
+      for (String dependency: makeDependencies(numberOfDependencies)) {
+        dependencies.addDependency(DependencyProto.Dependency.newBuilder().setTarget(dependency).build());
+      }
+
+      return Collections.singletonList(BindingGraphProto.BindingGraph.newBuilder()
+          .putAdjacencyList("com.google.Component", dependencies.build())
+          .build());
+    }
+
+    /**
+     * Returns sorted names of dependencies of com.google.Component.
+     */
+    static List<String> makeDependencies(int numberOfDependencies) {
+      List<String> dependencies = new ArrayList<>();
+      for (int index = 0; index < numberOfDependencies; index++) {
+        dependencies.add(String.format("com.google.Dependency%04d", index));
+      }
+      return dependencies;
+    }
+  }
+
+  /**
+   * A {@link SourcesLoader} which never finds binding graphs and remembers names of threads which tried to load them.
+   *
+   * <p>The given number of attempts after the first one wait until {@code release} is opened,
+   * so queries which load graphs can keep workers busy.
+   */
+  private static class MissingSourcesLoader extends SourcesLoader {
+    private final List<String> loadingThreads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final int blockedAttempts;
+
+    MissingSourcesLoader(int blockedAttempts) {
+      this.blockedAttempts = blockedAttempts;
+    }
+
+    @Override
+    public List<BindingGraphProto.BindingGraph> loadBindingGraphs() throws IOException {
+      loadingThreads.add(Thread.currentThread().getName());
+      if (loadingThreads.size() > 1 && loadingThreads.size() <= 1 + blockedAttempts) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      throw new FileNotFoundException("File with binding graphs is missing.");
+    }
   }
 }